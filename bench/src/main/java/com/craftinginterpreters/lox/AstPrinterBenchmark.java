@@ -0,0 +1,77 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * AstPrinter.print of parsed trees in the shapes of ParserBenchmark, into
+ * a String and streamed into a Writer, and AstReader reading it back.
+ * `nodes` reports tree nodes printed (or read) per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xss64m") // deep trees recurse once per level
+@State(Scope.Benchmark)
+public class AstPrinterBenchmark {
+  @Param({"flat", "deep", "wide"})
+  public String shape;
+
+  @Param({"1000"})
+  public int leaves;
+
+  private Expr expr;
+  private String printed;
+  private final AstPrinter printer = new AstPrinter();
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Throughput {
+    public long nodes;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		nodes = 0;
+	}
+  }
+
+  @Setup
+  public void generate() {
+    expr = Inputs.parse(Inputs.shape(shape, leaves, Inputs.SEED));
+	printed = printer.print(expr);
+  }
+
+  @Benchmark
+  public String print(Throughput throughput) {
+    throughput.nodes += expr.size;
+	return printer.print(expr);
+  }
+
+  @Benchmark
+  public void stream(Throughput throughput) throws IOException {
+    throughput.nodes += expr.size;
+	printer.print(expr, Writer.nullWriter());
+  }
+
+  @Benchmark
+  public Expr read(Throughput throughput) {
+    throughput.nodes += expr.size;
+	return AstReader.read(printed);
+  }
+}
@@ -0,0 +1,91 @@
+package com.craftinginterpreters.lox;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * What evaluating within a Budget costs on the hot path: the same tree
+ * through Interpreter.evaluate(expr, budget) with
+ *
+ *   none       no budget (null)
+ *   unlimited  a budget with no limit set
+ *   armed      every limit set, far enough out that none is reached:
+ *              steps and the clock are checked every 1024 operators,
+ *              the string cap on every string +
+ *
+ * `operators` reports Binary / Unary nodes evaluated per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+@State(Scope.Benchmark)
+public class BudgetBenchmark {
+  @Param({"arithmetic", "strings"})
+  public String workload;
+
+  @Param({"none", "unlimited", "armed"})
+  public String budget;
+
+  @Param({"1000"})
+  public int leaves;
+
+  private Expr expr;
+  private int operators;
+  private final Interpreter interpreter = new Interpreter(new OutputSink.InMemory());
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Throughput {
+    public long operators;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		operators = 0;
+	}
+  }
+
+  @Setup
+  public void generate() {
+    String source;
+	switch (workload) {
+		case "arithmetic":
+			source = Inputs.shape("wide", leaves, Inputs.SEED);
+			break;
+		case "strings":
+			source = Inputs.tokens("strings", leaves * 16, Inputs.SEED).replace(" + 1", " + \"\"");
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown workload '" + workload + "'.");
+	}
+	expr = Inputs.parse(source);
+	operators = Inputs.operators(expr);
+	if (!budget.equals("none") && !budget.equals("unlimited") && !budget.equals("armed")) {
+		throw new IllegalArgumentException("Unknown budget '" + budget + "'.");
+	}
+  }
+
+  @Benchmark
+  public Object evaluate(Throughput throughput) {
+    throughput.operators += operators;
+	// a new one every time: a budget counts what it granted, and the deadline starts now
+	Budget limits = null;
+	if (budget.equals("unlimited")) limits = new Budget(0, 0, 0);
+	if (budget.equals("armed")) limits = new Budget(Long.MAX_VALUE / 2, TimeUnit.HOURS.toNanos(1), Integer.MAX_VALUE / 2);
+	return Rope.flatten(interpreter.evaluate(expr, limits));
+  }
+}
@@ -0,0 +1,102 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+
+/*
+ * Synthetic lox programs of any size, for ScalingBenchmark. A program is a
+ * list of statements in one of these shapes:
+ *
+ *   flat      print 3 + 1 - 4 + 1 - 5 ...;         long sums
+ *   deep      print -(3 + -(1 + -(4 + ...)));      nested 32 levels
+ *   strings   print "lorem" + " ipsum" + ...;      string concatenation
+ *   comments  mostly // and /* *\/ comments, a print now and then
+ *   errors    every fourth statement misses an operand
+ *
+ * The same shape, size and seed always give the same program.
+ */
+final class Corpus {
+  static final String[] SHAPES = {"flat", "deep", "strings", "comments", "errors"};
+
+  private static final String[] WORDS = {
+	"lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing", "elit"
+  };
+
+  private Corpus() {}
+
+  static String generate(String shape, long bytes, long seed) {
+    if (bytes > Integer.MAX_VALUE - 1024) {
+		throw new IllegalArgumentException("A corpus has to fit in one String, at most 2g.");
+	}
+	StringBuilder source = new StringBuilder((int)bytes + 256);
+	try {
+		write(source, shape, bytes, seed);
+	} catch (IOException error) {
+		throw new AssertionError(error); // StringBuilder does not throw
+	}
+	return source.toString();
+  }
+
+  /*
+   * about `bytes` chars of program, whole statements only.
+   */
+  static void write(Appendable out, String shape, long bytes, long seed) throws IOException {
+    Random random = new Random(seed);
+	StringBuilder statement = new StringBuilder(256);
+	long written = 0;
+	long count = 0;
+	while (written < bytes) {
+		statement.setLength(0);
+		statement(statement, shape, random, count++);
+		out.append(statement);
+		written += statement.length();
+	}
+	if (out instanceof Writer) ((Writer)out).flush();
+  }
+
+  private static void statement(StringBuilder out, String shape, Random random, long index) {
+    switch (shape) {
+		case "flat":
+			out.append("print ").append(random.nextInt(10));
+			for (int i = 1; i < 40; i++) out.append(i % 2 == 0 ? " + " : " - ").append(random.nextInt(10));
+			out.append(";\n");
+			break;
+		case "deep":
+			out.append("print ");
+			for (int i = 1; i < 32; i++) out.append("-(").append(random.nextInt(10)).append(" + ");
+			out.append(random.nextInt(10));
+			for (int i = 1; i < 32; i++) out.append(')');
+			out.append(";\n");
+			break;
+		case "strings":
+			out.append("print \"").append(word(random)).append('"');
+			for (int i = 1; i < 8; i++) out.append(" + \" ").append(word(random)).append('"');
+			out.append(";\n");
+			break;
+		case "comments":
+			if (index % 10 == 9) {
+				out.append("print ").append(random.nextInt(100)).append(";\n");
+			} else if (index % 10 == 4) {
+				out.append("/* ").append(word(random)).append(' ').append(word(random)).append("\n   ")
+					.append(word(random)).append(" */\n");
+			} else {
+				out.append("// ");
+				for (int i = 0; i < 8; i++) out.append(word(random)).append(' ');
+				out.append('\n');
+			}
+			break;
+		case "errors":
+			out.append("print ").append(random.nextInt(100)).append(" + ");
+			if (index % 4 != 3) out.append(random.nextInt(100));
+			out.append(";\n");
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown shape '" + shape + "'.");
+	}
+  }
+
+  private static String word(Random random) {
+    return WORDS[random.nextInt(WORDS.length)];
+  }
+}
@@ -0,0 +1,78 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Lox.runCaptured (scan, parse, evaluate, diagnostics into memory) of
+ * lines that are all valid against lines of which half have a syntax or
+ * a runtime error (see Inputs.lines). The errors are thrown from `depth`
+ * levels of recursion, where a stack trace would be expensive. `lines`
+ * reports lines run per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ErrorBenchmark {
+  @Param({"valid", "errors"})
+  public String mix;
+
+  @Param({"40"})
+  public int depth;
+
+  @Param({"100"})
+  public int count;
+
+  private List<String> lines;
+  private final Interpreter interpreter = new Interpreter();
+  private final Lox.Diagnostics errors = new Lox.Diagnostics();
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Throughput {
+    public long lines;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		lines = 0;
+	}
+  }
+
+  @Setup
+  public void generate() {
+    lines = Inputs.lines(mix, count, depth, Inputs.SEED);
+  }
+
+  @Benchmark
+  public int run(Throughput throughput) {
+    throughput.lines += lines.size();
+	errors.clear();
+	Lox.captureDiagnostics(errors); // the benchmark thread may not be the one that ran generate()
+	try {
+		int printed = 0;
+		for (int i = 0; i < lines.size(); i++) {
+			if (Lox.runCaptured(interpreter, lines.get(i), i + 1, errors) != null) printed++;
+		}
+		return printed + errors.length();
+	} finally {
+		Lox.captureDiagnostics(null);
+	}
+  }
+}
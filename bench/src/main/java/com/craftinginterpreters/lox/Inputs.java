@@ -0,0 +1,146 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Sources for the benchmarks. Every generator takes a seed, so the same
+ * parameters give the same source on every run and every machine.
+ */
+final class Inputs {
+  static final long SEED = 42;
+
+  private static final String[] WORDS = {
+	"lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing", "elit"
+  };
+  private static final String[] KINDS = {
+	"numbers", "strings", "operators", "identifiers", "comments"
+  };
+  private static final String[] OPERATORS = {
+	" + ", " - ", " * ", " / ", " == ", " != ", " < ", " <= ", " > ", " >= "
+  };
+
+  private Inputs() {}
+
+  /*
+   * about `bytes` chars of source dominated by one kind of token:
+   *   numbers, strings, operators, identifiers, comments, or mixed
+   * (every kind in turn). it always scans without errors.
+   */
+  static String tokens(String mix, int bytes, long seed) {
+    Random random = new Random(seed);
+	StringBuilder source = new StringBuilder(bytes + 64);
+	int kind = 0;
+	while (source.length() < bytes) {
+		switch (mix.equals("mixed") ? KINDS[kind++ % KINDS.length] : mix) {
+			case "numbers":
+				source.append(random.nextInt(100000)).append('.').append(random.nextInt(100)).append(" + ");
+				break;
+			case "strings":
+				source.append('"').append(WORDS[random.nextInt(WORDS.length)]).append(' ')
+					.append(WORDS[random.nextInt(WORDS.length)]).append("\" + ");
+				break;
+			case "operators":
+				source.append("!-(1").append(OPERATORS[random.nextInt(OPERATORS.length)]).append("2)")
+					.append(OPERATORS[random.nextInt(OPERATORS.length)]);
+				break;
+			case "identifiers":
+				source.append(WORDS[random.nextInt(WORDS.length)]).append('_').append(random.nextInt(1000))
+					.append(" + ");
+				break;
+			case "comments":
+				source.append("1 // ").append(WORDS[random.nextInt(WORDS.length)]).append(' ')
+					.append(WORDS[random.nextInt(WORDS.length)]).append("\n+ ");
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown token mix '" + mix + "'.");
+		}
+	}
+	return source.append('1').toString();
+  }
+
+  /*
+   * an expression of `leaves` numbers in one of three shapes:
+   *   flat  1 + 2 + 3 ...        one long left leaning chain
+   *   deep  -(1 + -(2 + ...))    nested `leaves` levels deep
+   *   wide  (1 + 2) - (3 + 4)    balanced, both operands the same size
+   */
+  static String shape(String shape, int leaves, long seed) {
+    Random random = new Random(seed);
+	StringBuilder source = new StringBuilder();
+	switch (shape) {
+		case "flat":
+			for (int i = 0; i < leaves; i++) {
+				if (i > 0) source.append(i % 2 == 0 ? " + " : " - ");
+				source.append(random.nextInt(10));
+			}
+			break;
+		case "deep":
+			for (int i = 1; i < leaves; i++) source.append("-(").append(random.nextInt(10)).append(" + ");
+			source.append(random.nextInt(10));
+			for (int i = 1; i < leaves; i++) source.append(')');
+			break;
+		case "wide":
+			balanced(source, random, 0, leaves);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown shape '" + shape + "'.");
+	}
+	return source.toString();
+  }
+
+  private static void balanced(StringBuilder source, Random random, int depth, int leaves) {
+    if (leaves == 1) {
+		source.append(random.nextInt(10));
+		return;
+	}
+	source.append('(');
+	balanced(source, random, depth + 1, leaves / 2);
+	source.append(depth % 2 == 0 ? ") + (" : ") - (");
+	balanced(source, random, depth + 1, leaves - leaves / 2);
+	source.append(')');
+  }
+
+  /*
+   * `count` lines for Lox.runCaptured, each nested `depth` levels deep:
+   *   valid   they all parse and evaluate
+   *   errors  every other line has a missing ')' at its end, or a
+   *           runtime error at its innermost level
+   */
+  static List<String> lines(String mix, int count, int depth, long seed) {
+    Random random = new Random(seed);
+	List<String> lines = new ArrayList<>(count);
+	for (int i = 0; i < count; i++) {
+		String line = shape("deep", depth, random.nextLong());
+		if (mix.equals("errors") && i % 2 == 1) {
+			if (random.nextBoolean()) {
+				line = line.substring(0, line.length() - 1);
+			} else {
+				int innermost = line.lastIndexOf(" + ") + 3;
+				line = line.substring(0, innermost) + "-\"x\"" + line.substring(innermost + 1);
+			}
+		} else if (!mix.equals("valid") && !mix.equals("errors")) {
+			throw new IllegalArgumentException("Unknown line mix '" + mix + "'.");
+		}
+		lines.add(line);
+	}
+	return lines;
+  }
+
+  // the Binary and Unary nodes of a tree
+  static int operators(Expr expr) {
+    if (expr instanceof Expr.Binary) {
+		return 1 + operators(((Expr.Binary)expr).left) + operators(((Expr.Binary)expr).right);
+	}
+	if (expr instanceof Expr.Unary) return 1 + operators(((Expr.Unary)expr).right);
+	if (expr instanceof Expr.Grouping) return operators(((Expr.Grouping)expr).expression);
+	return 0;
+  }
+
+  static Expr parse(String source) {
+    Expr expr = new Parser(new Scanner(source).scanTokens()).parse();
+	if (expr == null) throw new IllegalStateException("Benchmark input does not parse.");
+	return expr;
+  }
+}
@@ -0,0 +1,97 @@
+package com.craftinginterpreters.lox;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Interpreter.evaluate and Interpreter.interpret (evaluate plus printing
+ * the result, into a sink that throws the bytes away) of parsed trees.
+ * `operators` reports Binary / Unary nodes evaluated per second. a string
+ * result is flattened, as anything looking at it would, so that `strings`
+ * pays for its text and not only for the ropes.
+ *
+ * run with `-prof gc` for the allocation rate (gc.alloc.rate.norm is the
+ * bytes allocated per evaluation).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InterpreterBenchmark {
+  /*
+   *   arithmetic  a wide tree of + and -
+   *   comparison  numbers compared and the results compared again
+   *   strings     a long chain of string +
+   */
+  @Param({"arithmetic", "comparison", "strings"})
+  public String workload;
+
+  @Param({"1000"})
+  public int leaves;
+
+  private Expr expr;
+  private int operators;
+  private Interpreter interpreter;
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Throughput {
+    public long operators;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		operators = 0;
+	}
+  }
+
+  @Setup
+  public void generate() {
+    String source;
+	switch (workload) {
+		case "arithmetic":
+			source = Inputs.shape("wide", leaves, Inputs.SEED);
+			break;
+		case "comparison":
+			StringBuilder comparisons = new StringBuilder("1 < 2");
+			for (int i = 1; i < leaves / 2; i++) comparisons.append(i % 2 == 0 ? " == " : " != ").append("(1 < 2)");
+			source = comparisons.toString();
+			break;
+		case "strings":
+			source = Inputs.tokens("strings", leaves * 16, Inputs.SEED).replace(" + 1", " + \"\"");
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown workload '" + workload + "'.");
+	}
+	expr = Inputs.parse(source);
+	operators = Inputs.operators(expr);
+	interpreter = new Interpreter(OutputSink.to(OutputStream.nullOutputStream(), OutputSink.Flush.END, 1 << 16));
+  }
+
+  @Benchmark
+  public Object evaluate(Throughput throughput) {
+    throughput.operators += operators;
+	return Rope.flatten(interpreter.evaluate(expr));
+  }
+
+  @Benchmark
+  public void interpret(Throughput throughput) {
+    throughput.operators += operators;
+	interpreter.interpret(expr);
+  }
+}
@@ -0,0 +1,103 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Printing results: OutputSink with each flush policy against what the
+ * interpreter did before it, println(stringify(value)) on an autoflushing
+ * PrintStream like System.out. Everything goes to a stream that throws
+ * the bytes away, so this is the cost of getting them there. `values`
+ * reports results printed per second.
+ *
+ *   println  PrintStream, flushed on every line
+ *   line     OutputSink, Flush.LINE
+ *   bytes    OutputSink, Flush.BYTES every 64 KiB
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OutputBenchmark {
+  @Param({"println", "line", "bytes"})
+  public String sink;
+
+  @Param({"1000"})
+  public int count;
+
+  private Object[] values; // small and large numbers, strings, booleans and nil
+  private Interpreter interpreter;
+  private PrintStream out;
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Throughput {
+    public long values;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		values = 0;
+	}
+  }
+
+  @Setup
+  public void generate() {
+    Random random = new Random(Inputs.SEED);
+	values = new Object[count];
+	for (int i = 0; i < count; i++) {
+		switch (i % 5) {
+			case 0: values[i] = (double)random.nextInt(100000); break;
+			case 1: values[i] = random.nextDouble() * 1e9; break;
+			case 2: values[i] = "lorem ipsum " + random.nextInt(1000); break;
+			case 3: values[i] = random.nextBoolean(); break;
+			default: values[i] = null;
+		}
+	}
+
+	OutputStream nowhere = OutputStream.nullOutputStream();
+	switch (sink) {
+		case "println":
+			interpreter = new Interpreter();
+			out = new PrintStream(new BufferedOutputStream(nowhere, 8192), true);
+			break;
+		case "line":
+			interpreter = new Interpreter(OutputSink.to(nowhere, OutputSink.Flush.LINE, 1 << 16));
+			break;
+		case "bytes":
+			interpreter = new Interpreter(OutputSink.to(nowhere, OutputSink.Flush.BYTES, 1 << 16));
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown sink '" + sink + "'.");
+	}
+  }
+
+  @Benchmark
+  public void print(Throughput throughput) {
+    throughput.values += values.length;
+	if (out != null) {
+		for (Object value : values) out.println(interpreter.stringify(value));
+		return;
+	}
+	for (Object value : values) interpreter.output.print(value);
+	interpreter.output.flush();
+  }
+}
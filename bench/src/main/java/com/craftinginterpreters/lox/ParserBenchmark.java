@@ -0,0 +1,62 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Parser.parse of already scanned tokens, for flat, deep and wide trees
+ * (see Inputs.shape). `nodes` reports tree nodes built per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xss64m") // deep trees recurse once per level
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+  @Param({"flat", "deep", "wide"})
+  public String shape;
+
+  @Param({"1000"})
+  public int leaves;
+
+  private List<Token> tokens;
+  private int nodes;
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Throughput {
+    public long nodes;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		nodes = 0;
+	}
+  }
+
+  @Setup
+  public void generate() {
+    tokens = new Scanner(Inputs.shape(shape, leaves, Inputs.SEED)).scanTokens();
+	nodes = new Parser(tokens).parse().size;
+  }
+
+  @Benchmark
+  public Expr parse(Throughput throughput) {
+    throughput.nodes += nodes;
+	return new Parser(tokens).parse();
+  }
+}
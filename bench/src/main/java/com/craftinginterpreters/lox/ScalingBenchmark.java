@@ -0,0 +1,357 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * How jlox scales with the size of its input.
+ *
+ * For every corpus shape (see Corpus) and every size from --min to --max,
+ * four times bigger each step, one fresh JVM generates the program and runs
+ * it through the whole pipeline: scan, parse, execute (the sequential
+ * program mode). It reports per phase the wall time and throughput, and
+ * for the run the GC time, peak heap and peak RSS.
+ *
+ * Every run first warms up on a smaller program of the same shape, so the
+ * times are those of compiled code rather than of the JIT getting there.
+ *
+ * Then, per shape and phase, it fits the exponent of time over size on the
+ * largest sizes that take long enough to measure. Anything clearly above 1
+ * is flagged as super-linear. With --baseline, every point is compared with
+ * the same point of an earlier --out file and flagged when its throughput
+ * dropped by more than --tolerance. Flags make the exit status 1.
+ *
+ *   java -cp bench/target/benchmarks.jar com.craftinginterpreters.lox.ScalingBenchmark
+ *        [--shapes flat,deep,...] [--min 1k] [--max 64m] [--xmx 4g]
+ *        [--out results.tsv] [--baseline baseline.tsv] [--tolerance 0.25]
+ *
+ *   ... ScalingBenchmark corpus <shape> <size> <file>   just write a corpus
+ *
+ * Sizes up to 1g need a heap of about 40 times the size: every token and
+ * node of the program is alive at once.
+ */
+public class ScalingBenchmark {
+  private static final long SEED = 42;
+  private static final String[] PHASES = {"scan", "parse", "execute"};
+  // below this a phase is mostly noise, it does not count for the fit
+  private static final long MEASURABLE_NANOS = 20_000_000;
+  private static final double SUPER_LINEAR = 1.15;
+  private static final int FITTED_POINTS = 3;
+  private static final long WARM_UP_BYTES = 256 << 10;
+
+  public static void main(String[] args) throws Exception {
+    if (args.length > 0 && args[0].equals("--child")) {
+		child(args[1], parseSize(args[2]));
+		return;
+	}
+	if (args.length > 0 && args[0].equals("corpus")) {
+		if (args.length != 4) usage();
+		try (Writer out = Files.newBufferedWriter(Paths.get(args[3]), StandardCharsets.UTF_8)) {
+			Corpus.write(out, args[1], parseSize(args[2]), SEED);
+		}
+		return;
+	}
+
+	List<String> shapes = Arrays.asList(Corpus.SHAPES);
+	long min = 1 << 10;
+	long max = 64 << 20;
+	String heap = "4g";
+	Path out = null;
+	Path baseline = null;
+	double tolerance = 0.25;
+	for (int i = 0; i < args.length; i++) {
+		if (i + 1 >= args.length) usage();
+		switch (args[i]) {
+			case "--shapes": shapes = Arrays.asList(args[++i].split(",")); break;
+			case "--min": min = parseSize(args[++i]); break;
+			case "--max": max = parseSize(args[++i]); break;
+			case "--xmx": heap = args[++i]; break;
+			case "--out": out = Paths.get(args[++i]); break;
+			case "--baseline": baseline = Paths.get(args[++i]); break;
+			case "--tolerance": tolerance = Double.parseDouble(args[++i]); break;
+			default: usage();
+		}
+	}
+
+	List<Point> points = new ArrayList<>();
+	System.out.println("shape     size        phase       ms      MB/s   gc ms  heap MB   rss MB");
+	for (String shape : shapes) {
+		for (long size = min; size <= max; size *= 4) {
+			Map<String, Long> result = runChild(shape, size, heap);
+			for (String phase : PHASES) {
+				Point point = new Point(shape, size, phase, result.get(phase),
+					result.get("gc"), result.get("heap"), result.get("rss"));
+				points.add(point);
+				System.out.println(point.row());
+			}
+		}
+	}
+
+	boolean flagged = checkScaling(points);
+	if (baseline != null) flagged |= compare(points, Point.read(baseline), tolerance);
+	if (out != null) Point.write(points, out);
+	if (flagged) System.exit(1);
+  }
+
+  private static void usage() {
+    System.err.println("Usage: scaling_benchmark [--shapes a,b] [--min size] [--max size] [--xmx heap]\n" +
+		"                         [--out file] [--baseline file] [--tolerance fraction]\n" +
+		"       scaling_benchmark corpus <shape> <size> <file>");
+	System.exit(64);
+  }
+
+  // 1024, 64k, 16m, 1g
+  static long parseSize(String size) {
+    String lower = size.toLowerCase();
+	long unit = 1;
+	if (lower.endsWith("k")) unit = 1L << 10;
+	if (lower.endsWith("m")) unit = 1L << 20;
+	if (lower.endsWith("g")) unit = 1L << 30;
+	if (unit != 1) lower = lower.substring(0, lower.length() - 1);
+	return Long.parseLong(lower) * unit;
+  }
+
+  private static Map<String, Long> runChild(String shape, long size, String heap)
+		throws IOException, InterruptedException {
+    List<String> command = new ArrayList<>();
+	command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+	command.add("-Xmx" + heap);
+	command.add("-cp");
+	command.add(System.getProperty("java.class.path"));
+	command.add(ScalingBenchmark.class.getName());
+	command.add("--child");
+	command.add(shape);
+	command.add(String.valueOf(size));
+
+	Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+	Map<String, Long> result = new LinkedHashMap<>();
+	try (BufferedReader reader = new BufferedReader(
+			new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+		String line;
+		while ((line = reader.readLine()) != null) {
+			String[] pair = line.split("=");
+			if (pair.length == 2) result.put(pair[0], Long.parseLong(pair[1]));
+		}
+	}
+	if (process.waitFor() != 0 || !result.keySet().containsAll(Arrays.asList(PHASES))) {
+		throw new IOException("Run of " + shape + " at " + size + " bytes failed.");
+	}
+	return result;
+  }
+
+  /*
+   * one point, in a fresh JVM. prints key=value lines for the parent.
+   */
+  private static void child(String shape, long size) {
+    PrintStream report = System.out;
+	PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+	System.setErr(discard); // the errors shape reports a lot of them
+
+	String warmUp = Corpus.generate(shape, Math.min(size, WARM_UP_BYTES), SEED + 1);
+	for (int i = 0; i < 5; i++) run(warmUp, new long[3]);
+	warmUp = null;
+	System.gc();
+
+	String source = Corpus.generate(shape, size, SEED);
+	for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) pool.resetPeakUsage();
+	long gcBefore = gcMillis();
+	long[] nanos = new long[3];
+	run(source, nanos);
+
+	report.println("scan=" + nanos[0]);
+	report.println("parse=" + nanos[1]);
+	report.println("execute=" + nanos[2]);
+	report.println("gc=" + (gcMillis() - gcBefore));
+	report.println("heap=" + peakHeap());
+	report.println("rss=" + peakRss());
+  }
+
+  /*
+   * the sequential program mode, timing every phase. a program with
+   * syntax errors is not executed, its execute time is -1.
+   */
+  private static void run(String source, long[] nanos) {
+    Lox.hadError = false;
+	long start = System.nanoTime();
+	List<Token> tokens = new Scanner(source).scanTokens();
+	long scanned = System.nanoTime();
+	List<Stmt> statements = new Parser(tokens).parseProgram();
+	long parsed = System.nanoTime();
+	nanos[0] = scanned - start;
+	nanos[1] = parsed - scanned;
+	nanos[2] = -1;
+	if (Lox.hadError) return;
+
+	Interpreter interpreter = new Interpreter(OutputSink.to(OutputStream.nullOutputStream(),
+		OutputSink.Flush.END, 1 << 16));
+	interpreter.interpret(statements);
+	nanos[2] = System.nanoTime() - parsed;
+  }
+
+  private static long gcMillis() {
+    long total = 0;
+	for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+		total += Math.max(0, gc.getCollectionTime());
+	}
+	return total;
+  }
+
+  private static long peakHeap() {
+    long total = 0;
+	for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+		if (pool.getType() == MemoryType.HEAP) total += pool.getPeakUsage().getUsed();
+	}
+	return total;
+  }
+
+  // high water mark of the resident set, from /proc on linux. -1 elsewhere
+  private static long peakRss() {
+    try {
+		for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+			if (line.startsWith("VmHWM:")) {
+				return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+			}
+		}
+	} catch (IOException | RuntimeException error) {
+		// not linux
+	}
+	return -1;
+  }
+
+  /*
+   * least squares slope of log(time) over log(size), per shape and phase.
+   */
+  private static boolean checkScaling(List<Point> points) {
+    boolean flagged = false;
+	Map<String, List<Point>> series = new LinkedHashMap<>();
+	for (Point point : points) {
+		if (point.nanos < MEASURABLE_NANOS) continue;
+		series.computeIfAbsent(point.shape + " " + point.phase, key -> new ArrayList<>()).add(point);
+	}
+
+	System.out.println();
+	for (Map.Entry<String, List<Point>> entry : series.entrySet()) {
+		List<Point> measured = entry.getValue();
+		if (measured.size() < 2) continue;
+		measured = measured.subList(Math.max(0, measured.size() - FITTED_POINTS), measured.size());
+
+		double n = measured.size(), sx = 0, sy = 0, sxx = 0, sxy = 0;
+		for (Point point : measured) {
+			double x = Math.log(point.size);
+			double y = Math.log(point.nanos);
+			sx += x;
+			sy += y;
+			sxx += x * x;
+			sxy += x * y;
+		}
+		double exponent = (n * sxy - sx * sy) / (n * sxx - sx * sx);
+		boolean superLinear = exponent > SUPER_LINEAR;
+		flagged |= superLinear;
+		System.out.printf("%-18s time ~ size^%.2f%s%n", entry.getKey(), exponent,
+			superLinear ? "   SUPER-LINEAR" : "");
+	}
+	return flagged;
+  }
+
+  private static boolean compare(List<Point> points, Map<String, Point> baseline, double tolerance) {
+    boolean flagged = false;
+	System.out.println();
+	for (Point point : points) {
+		Point before = baseline.get(point.key());
+		if (before == null || point.nanos < MEASURABLE_NANOS || before.nanos < MEASURABLE_NANOS) continue;
+
+		double change = (double)point.nanos / before.nanos - 1;
+		if (change > tolerance) {
+			flagged = true;
+			System.out.printf("REGRESSION %-8s %9s %-8s %.0f%% slower than baseline%n",
+				point.shape, size(point.size), point.phase, change * 100);
+		}
+	}
+	if (!flagged) System.out.println("no regressions against the baseline");
+	return flagged;
+  }
+
+  static String size(long bytes) {
+    if (bytes >= 1L << 30 && bytes % (1L << 30) == 0) return (bytes >> 30) + "g";
+	if (bytes >= 1L << 20 && bytes % (1L << 20) == 0) return (bytes >> 20) + "m";
+	if (bytes >= 1L << 10 && bytes % (1L << 10) == 0) return (bytes >> 10) + "k";
+	return String.valueOf(bytes);
+  }
+
+  /*
+   * one phase of one run. results files hold one point per line, tab
+   * separated, with a header: shape size phase nanos gc_ms heap_bytes rss_bytes
+   */
+  private static class Point {
+    final String shape;
+	final long size;
+	final String phase;
+	final long nanos;
+	final long gcMillis;
+	final long heap;
+	final long rss;
+
+	Point(String shape, long size, String phase, long nanos, long gcMillis, long heap, long rss) {
+		this.shape = shape;
+		this.size = size;
+		this.phase = phase;
+		this.nanos = nanos;
+		this.gcMillis = gcMillis;
+		this.heap = heap;
+		this.rss = rss;
+	}
+
+	String key() {
+		return shape + "\t" + size + "\t" + phase;
+	}
+
+	String row() {
+		if (nanos < 0) return String.format("%-9s %-11s %-8s  skipped", shape, size(size), phase);
+		double millis = nanos / 1e6;
+		double throughput = nanos == 0 ? 0 : size / (double)(1 << 20) / (nanos / 1e9);
+		return String.format("%-9s %-11s %-8s %8.1f %9.1f %7d %8d %8d", shape, size(size), phase,
+			millis, throughput, gcMillis, heap >> 20, rss < 0 ? -1 : rss >> 20);
+	}
+
+	static void write(List<Point> points, Path path) throws IOException {
+		List<String> lines = new ArrayList<>();
+		lines.add("shape\tsize\tphase\tnanos\tgc_ms\theap_bytes\trss_bytes");
+		for (Point point : points) {
+			lines.add(point.key() + "\t" + point.nanos + "\t" + point.gcMillis + "\t" +
+				point.heap + "\t" + point.rss);
+		}
+		Files.write(path, lines, StandardCharsets.UTF_8);
+	}
+
+	static Map<String, Point> read(Path path) throws IOException {
+		Map<String, Point> points = new LinkedHashMap<>();
+		List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+		for (String line : lines.subList(1, lines.size())) {
+			String[] fields = line.split("\t");
+			Point point = new Point(fields[0], Long.parseLong(fields[1]), fields[2],
+				Long.parseLong(fields[3]), Long.parseLong(fields[4]), Long.parseLong(fields[5]),
+				Long.parseLong(fields[6]));
+			points.put(point.key(), point);
+		}
+		return points;
+	}
+  }
+}
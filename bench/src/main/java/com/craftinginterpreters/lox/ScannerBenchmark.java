@@ -0,0 +1,60 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Scanner.scanTokens over sources dominated by one kind of token. Besides
+ * scans per second, `bytes` reports the chars of source scanned per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScannerBenchmark {
+  @Param({"numbers", "strings", "operators", "identifiers", "comments", "mixed"})
+  public String mix;
+
+  @Param({"65536"})
+  public int bytes;
+
+  private String source;
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Throughput {
+    public long bytes;
+
+	@Setup(Level.Iteration)
+	public void reset() {
+		bytes = 0;
+	}
+  }
+
+  @Setup
+  public void generate() {
+    source = Inputs.tokens(mix, bytes, Inputs.SEED);
+  }
+
+  @Benchmark
+  public List<Token> scanTokens(Throughput throughput) {
+    throughput.bytes += source.length();
+	return new Scanner(source).scanTokens();
+  }
+}
@@ -1,5 +1,10 @@
 package com.craftinginterpreters.lox;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 /*
  * prinitng abstract syntax tree in a string format that has an unambiguous
  * order of operation, applied to tokens or subexpressions contained in the
@@ -8,21 +13,69 @@ package com.craftinginterpreters.lox;
  * this also implements the visitor interface that is declared in Expr.java
  * This means that we need to have concrete implementation for each visit
  * methods in the interface.
+ *
+ * The printed form is an S-expression that AstReader reads back into the
+ * same tree:
+ *
+ *   (* (- 123) (group 45.67))    (== "lorem ipsum" nil)    (! done)
+ *
+ * strings are quoted (a lox string can not hold a quote, so nothing needs
+ * escaping) and numbers are Java doubles. the ones that are not finite are
+ * #NaN, #Infinity and #-Infinity, as NaN and Infinity are names.
+ * Printing streams into any Appendable and keeps its own stack instead of
+ * recursing, so it takes time linear in the size of the tree, whatever
+ * its depth.
  */
 
-class AstPrinter implements Expr.Visitor<String> {
+class AstPrinter implements Expr.Visitor<Void> {
+  private final Deque<Object> pending = new ArrayDeque<>(); // nodes still to print, and the text between them
+  private Appendable out;
+
   String print(Expr expr) {
-    return expr.accept(this);
+    StringBuilder builder = new StringBuilder(expr.size * 4);
+	try {
+		print(expr, builder);
+	} catch (IOException error) {
+		throw new UncheckedIOException(error); // StringBuilder does not throw
+	}
+	return builder.toString();
+  }
+
+  /*
+   * the same into `out`, a Writer or a StringBuilder. a Writer should be
+   * buffered, it gets one short append after another.
+   */
+  void print(Expr expr, Appendable out) throws IOException {
+    this.out = out;
+	pending.clear();
+	pending.push(expr);
+	try {
+		while (!pending.isEmpty()) {
+			Object next = pending.pop();
+			if (next instanceof Expr) {
+				((Expr)next).accept(this);
+			} else {
+				out.append((String)next);
+			}
+		}
+	} catch (UncheckedIOException error) {
+		throw error.getCause(); // out threw from inside a visit method
+	} finally {
+		this.out = null;
+		pending.clear();
+	}
   }
 
   @Override
-  public String visitBinaryExpr(Expr.Binary expr) {
-    return parenthesize(expr.operator.lexeme, expr.left, expr.right);
+  public Void visitBinaryExpr(Expr.Binary expr) {
+    parenthesize(expr.operator.lexeme, expr.left, expr.right);
+	return null;
   }
 
   @Override
-  public String visitGroupingExpr(Expr.Grouping expr) {
-    return parenthesize("group", expr.expression);
+  public Void visitGroupingExpr(Expr.Grouping expr) {
+    parenthesize("group", expr.expression);
+	return null;
   }
 
   /*
@@ -30,41 +83,64 @@ class AstPrinter implements Expr.Visitor<String> {
    * or handle java null to become lox nil
    */
   @Override
-  public String visitLiteralExpr(Expr.Literal expr) {
-    if(expr.value == null) return "nil";
-	return expr.value.toString();
+  public Void visitLiteralExpr(Expr.Literal expr) {
+    if (expr.value == null) {
+		append("nil");
+	} else if (expr.value instanceof String) {
+		append("\"");
+		append((String)expr.value);
+		append("\"");
+	} else if (expr.value instanceof Double && !Double.isFinite((Double)expr.value)) {
+		append("#");
+		append(expr.value.toString());
+	} else {
+		append(expr.value.toString());
+	}
+	return null;
+  }
+
+  @Override
+  public Void visitUnaryExpr(Expr.Unary expr) {
+    parenthesize(expr.operator.lexeme, expr.right);
+	return null;
   }
 
   @Override
-  public String visitUnaryExpr(Expr.Unary expr) {
-    return parenthesize(expr.operator.lexeme, expr.right);
+  public Void visitVariableExpr(Expr.Variable expr) {
+    append(expr.name.lexeme);
+	return null;
   }
 
   /*
    * parenthesize helper function to handle other expr's
-   * subexpression
+   * subexpression. it prints the head right away and leaves the
+   * subexpressions on the stack, last one first, so that they come
+   * out in order and nothing is built up in between.
    */
-  private String parenthesize(String name, Expr... exprs) {
-    StringBuilder builder = new StringBuilder();
-
-	builder.append("(").append(name);
-	for (Expr expr : exprs){
-		builder.append(" ");
-		// calls accept for each subexpression in and then passes
-		// itself. It is a recursive step to print an entire tree
-		builder.append(expr.accept(this));
+  private void parenthesize(String name, Expr... exprs) {
+    append("(");
+	append(name);
+	pending.push(")");
+	for (int i = exprs.length - 1; i >= 0; i--) {
+		pending.push(exprs[i]);
+		pending.push(" ");
 	}
-	builder.append(")");
+  }
 
-	return builder.toString();
+  private void append(String text) {
+    try {
+		out.append(text);
+	} catch (IOException error) {
+		throw new UncheckedIOException(error);
+	}
   }
 
   // public static void main(String[] args) {
   //   Expr expression = new Expr.Binary(
 		// new Expr.Unary(
-				// new Token(TokenType.MINUS, "-", null, 1),
+				// new Token(TokenType.MINUS, "-", null, 1, 0),
 				// new Expr.Literal(123)),
-		// new Token(TokenType.STAR, "*", null, 1),
+		// new Token(TokenType.STAR, "*", null, 1, 5),
 		// new Expr.Grouping(
 				// new Expr.Literal(45.67)));
 
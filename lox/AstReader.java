@@ -0,0 +1,232 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.craftinginterpreters.lox.TokenType.*;
+
+/*
+ * Reads what AstPrinter prints back into a tree, so that a printed tree
+ * can be kept or sent somewhere and turned back into the same Expr:
+ *
+ *   Expr copy = AstReader.read(new AstPrinter().print(expr));
+ *
+ * It reads in one pass over the chars, with a stack of the lists still
+ * open instead of recursion, so it takes linear time and any depth.
+ * Tokens it makes up for operators and variables get the line and offset
+ * they were read at, in the printed text. Anything AstPrinter could not
+ * have printed is an IllegalArgumentException.
+ */
+class AstReader {
+  private static final Map<String, TokenType> OPERATORS = new HashMap<>();
+  private static final Map<String, String> LEXEMES = new HashMap<>(); // one string for all tokens of an operator
+
+  static {
+    TokenType[] types = {BANG, BANG_EQUAL, EQUAL_EQUAL, GREATER, GREATER_EQUAL, LESS, LESS_EQUAL,
+		MINUS, PLUS, SLASH, STAR};
+	String[] lexemes = {"!", "!=", "==", ">", ">=", "<", "<=", "-", "+", "/", "*"};
+	for (int i = 0; i < types.length; i++) {
+		OPERATORS.put(lexemes[i], types[i]);
+		LEXEMES.put(lexemes[i], lexemes[i]);
+	}
+  }
+
+  private final Reader in;
+  private final char[] buffer = new char[8192];
+  private int length = 0;
+  private int position = 0;
+  private int line = 1;
+  private long offset = 0; // chars read before buffer[position]
+  private final StringBuilder atom = new StringBuilder();
+  private final Deque<Open> open = new ArrayDeque<>();
+
+  AstReader(Reader in) {
+    this.in = in;
+  }
+
+  /*
+   * the one expression in `text`.
+   */
+  static Expr read(String text) {
+    try {
+		AstReader reader = new AstReader(new StringReader(text));
+		Expr expr = reader.next();
+		if (expr == null) throw reader.error("Expect expression.");
+		if (reader.skipSpace() != -1) throw reader.error("Expect end of input after expression.");
+		return expr;
+	} catch (IOException error) {
+		throw new UncheckedIOException(error); // StringReader does not throw
+	}
+  }
+
+  /*
+   * the next expression of the input, or null at its end. several can
+   * follow each other, separated by whitespace.
+   */
+  Expr next() throws IOException {
+    open.clear();
+	for (;;) {
+		int c = skipSpace();
+		Expr expr;
+		if (c == -1) {
+			if (open.isEmpty()) return null;
+			throw error("Expect ')' after expression, " + open.size() + " still open.");
+		} else if (c == '(') {
+			int at = line;
+			long from = offset + position;
+			position++;
+			skipSpace();
+			String head = readAtom();
+			if (head.isEmpty()) throw error("Expect operator after '('.");
+			open.push(new Open(head, at, from));
+			continue;
+		} else if (c == ')') {
+			position++;
+			if (open.isEmpty()) throw error("Unexpected ')'.");
+			expr = open.pop().build();
+		} else if (c == '"') {
+			expr = new Expr.Literal(readString());
+		} else {
+			long from = offset + position;
+			expr = atom(readAtom(), from);
+		}
+
+		if (open.isEmpty()) return expr;
+		open.peek().add(expr);
+	}
+  }
+
+  /*
+   * a list read up to its ')': the head and at most two subexpressions.
+   */
+  private class Open {
+    final String head;
+	final int line;
+	final long offset;
+	Expr first;
+	Expr second;
+	int count = 0;
+
+	Open(String head, int line, long offset) {
+		this.head = head;
+		this.line = line;
+		this.offset = offset;
+	}
+
+	void add(Expr expr) {
+		if (count == 0) {
+			first = expr;
+		} else if (count == 1) {
+			second = expr;
+		} else {
+			throw error("Too many operands for '" + head + "'.");
+		}
+		count++;
+	}
+
+	Expr build() {
+		if (head.equals("group")) {
+			if (count == 1) return new Expr.Grouping(first);
+			throw error("Wrong number of operands for 'group'.");
+		}
+
+		TokenType type = OPERATORS.get(head);
+		if (type == null) throw error("Unknown operator '" + head + "'.");
+		Token operator = new Token(type, LEXEMES.get(head), null, line, (int)Math.min(offset, Integer.MAX_VALUE));
+		if (count == 1 && (type == BANG || type == MINUS)) return new Expr.Unary(operator, first);
+		if (count == 2 && type != BANG) return new Expr.Binary(first, operator, second);
+		throw error("Wrong number of operands for '" + head + "'.");
+	}
+  }
+
+  private Expr atom(String text, long at) {
+    switch (text) {
+		case "nil": return new Expr.Literal(null);
+		case "true": return new Expr.Literal(true);
+		case "false": return new Expr.Literal(false);
+		case "#NaN": return new Expr.Literal(Double.NaN);
+		case "#Infinity": return new Expr.Literal(Double.POSITIVE_INFINITY);
+		case "#-Infinity": return new Expr.Literal(Double.NEGATIVE_INFINITY);
+	}
+
+	char first = text.charAt(0);
+	if (isDigit(first) || (first == '-' && text.length() > 1 && isDigit(text.charAt(1)))) {
+		try {
+			return new Expr.Literal(Double.parseDouble(text));
+		} catch (NumberFormatException error) {
+			throw error("Invalid number '" + text + "'.");
+		}
+	}
+	if (!isAlpha(first)) throw error("Unexpected '" + text + "'.");
+	for (int i = 1; i < text.length(); i++) {
+		if (!isAlpha(text.charAt(i)) && !isDigit(text.charAt(i))) throw error("Invalid name '" + text + "'.");
+	}
+	return new Expr.Variable(new Token(IDENTIFIER, text, null, line, (int)Math.min(at, Integer.MAX_VALUE)));
+  }
+
+  // everything up to the next space or paren
+  private String readAtom() throws IOException {
+    atom.setLength(0);
+	for (int c = peek(); c != -1 && c != '(' && c != ')' && c != '"' && !Character.isWhitespace(c); c = peek()) {
+		atom.append((char)c);
+		position++;
+	}
+	return atom.toString();
+  }
+
+  // a quoted string, which runs to the next quote and can span lines
+  private String readString() throws IOException {
+    int at = line;
+	position++; // the opening quote
+	atom.setLength(0);
+	for (;;) {
+		int c = peek();
+		if (c == -1) {
+			line = at;
+			throw error("Unterminated string.");
+		}
+		position++;
+		if (c == '"') return atom.toString();
+		if (c == '\n') line++;
+		atom.append((char)c);
+	}
+  }
+
+  // the next char that is not whitespace, not consumed, -1 at the end
+  private int skipSpace() throws IOException {
+    for (int c = peek(); c != -1; c = peek()) {
+		if (!Character.isWhitespace(c)) return c;
+		if (c == '\n') line++;
+		position++;
+	}
+	return -1;
+  }
+
+  private int peek() throws IOException {
+    if (position == length) {
+		offset += length;
+		position = 0;
+		length = Math.max(0, in.read(buffer));
+		if (length == 0) return -1;
+	}
+	return buffer[position];
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isAlpha(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+  }
+
+  private IllegalArgumentException error(String message) {
+    return new IllegalArgumentException("[line " + line + "] " + message);
+  }
+}
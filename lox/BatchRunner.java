@@ -0,0 +1,114 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/*
+ * Batch mode: every line of the input is an independent expression.
+ *
+ * Lines are grouped into chunks and every chunk is scanned, parsed and
+ * evaluated on the executor. Results and [line N] diagnostics are buffered
+ * per chunk, and the chunks are written back in input order.
+ *
+ * The queue of pending chunks is the reorder buffer. It never holds more
+ * than `window` chunks, so memory stays bounded no matter how big the input
+ * is: when it is full we wait for the oldest chunk before reading more.
+ */
+class BatchRunner {
+  private static final int CHUNK_LINES = 256;
+
+  private final ExecutorService executor;
+  private final int window; // max chunks in flight
+
+  // what kinds of error the lines written so far had
+  boolean hadError = false;
+  boolean hadRuntimeError = false;
+
+  BatchRunner(ExecutorService executor, int window) {
+    this.executor = executor;
+	this.window = Math.max(1, window);
+  }
+
+  void run(BufferedReader reader, PrintStream out, PrintStream err) throws IOException {
+    ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+	List<String> lines = new ArrayList<>(CHUNK_LINES);
+	int firstLine = 1;
+
+	for (;;) {
+		String line = reader.readLine();
+		if (line != null) lines.add(line);
+
+		if (lines.size() == CHUNK_LINES || (line == null && !lines.isEmpty())) {
+			// the reorder buffer is full: write the oldest chunk out first
+			if (pending.size() >= window) write(pending.removeFirst(), out, err);
+
+			Chunk chunk = new Chunk(firstLine, lines);
+			pending.addLast(executor.submit(chunk::evaluate));
+			firstLine += lines.size();
+			lines = new ArrayList<>(CHUNK_LINES);
+		}
+
+		if (line == null) break;
+	}
+
+	while (!pending.isEmpty()) write(pending.removeFirst(), out, err);
+	out.flush();
+	err.flush();
+  }
+
+  private void write(Future<Chunk> future, PrintStream out, PrintStream err) {
+    Chunk chunk;
+	try {
+		chunk = future.get();
+	} catch (InterruptedException error) {
+		Thread.currentThread().interrupt();
+		throw new RuntimeException(error);
+	} catch (ExecutionException error) {
+		throw new RuntimeException(error.getCause());
+	}
+
+	if (chunk.output.length() > 0) out.append(chunk.output);
+	if (chunk.errors.length() > 0) err.append(chunk.errors.text);
+	hadError |= chunk.errors.hadError;
+	hadRuntimeError |= chunk.errors.hadRuntimeError;
+  }
+
+  /*
+   * a run of consecutive lines together with what evaluating them printed.
+   */
+  private static class Chunk {
+    final int firstLine;
+	final List<String> lines;
+	final StringBuilder output = new StringBuilder();
+	final Lox.Diagnostics errors = new Lox.Diagnostics();
+
+	Chunk(int firstLine, List<String> lines) {
+		this.firstLine = firstLine;
+		this.lines = lines;
+	}
+
+	Chunk evaluate() {
+		Interpreter interpreter = new Interpreter();
+		Lox.captureDiagnostics(errors);
+		try {
+			for (int i = 0; i < lines.size(); i++) {
+				String source = lines.get(i);
+				if (source.isBlank()) continue; // nothing to evaluate
+
+				String value = Lox.runCaptured(interpreter, source, firstLine + i, errors);
+				if (value != null) output.append(value).append('\n');
+			}
+		} finally {
+			Lox.captureDiagnostics(null);
+		}
+		return this;
+	}
+  }
+}
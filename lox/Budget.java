@@ -0,0 +1,79 @@
+package com.craftinginterpreters.lox;
+
+/*
+ * Limits for one evaluation of untrusted input (see Interpreter.evaluate).
+ *
+ *   steps     operators (Expr.Binary / Expr.Unary) the evaluation may visit
+ *   deadline  wall clock time it may take
+ *   cancel()  stop it from another thread, a watchdog for instance
+ *   strings   longest string it may build with +
+ *   depth     how deeply the expression may nest, for the Parser
+ *
+ * Running out of any of them is reported like any other runtime error,
+ * at the operator that was being evaluated. Only the depth is checked
+ * while parsing, as a syntax error, since the parser and the interpreter
+ * both recurse once per level and a deep enough tree overflows the stack
+ * before the first step is counted.
+ *
+ * The interpreter does not call in here for every operator. It is granted
+ * up to CHECK_INTERVAL steps at a time and only counts them down itself,
+ * so the limits cost one decrement per operator on the hot path. The
+ * string cap is the length Rope.concat checks anyway, against the cap
+ * instead of what a String can hold.
+ */
+class Budget {
+  private static final int CHECK_INTERVAL = 1024;
+
+  private final long maxSteps;
+  private final long deadline; // System.nanoTime() based
+  final int maxStringLength; // checked by the interpreter, along with the + it does anyway
+  final int maxDepth; // 0 for no limit, as Parser takes it
+  private volatile String cancelled = null; // why, once cancelled
+
+  private long steps = 0; // granted so far
+
+  /*
+   * any limit that is zero or negative means no limit.
+   */
+  Budget(long maxSteps, long timeoutNanos, int maxStringLength) {
+    this(maxSteps, timeoutNanos, maxStringLength, 0);
+  }
+
+  Budget(long maxSteps, long timeoutNanos, int maxStringLength, int maxDepth) {
+    this.maxSteps = maxSteps > 0 ? maxSteps : Long.MAX_VALUE;
+	this.deadline = timeoutNanos > 0 ? System.nanoTime() + timeoutNanos : 0;
+	this.maxStringLength = maxStringLength > 0 ? maxStringLength : Integer.MAX_VALUE;
+	this.maxDepth = Math.max(0, maxDepth);
+  }
+
+  // may be called from any thread
+  void cancel() {
+    cancel("Evaluation cancelled.");
+  }
+
+  // the same, with the message the evaluation fails with
+  void cancel(String reason) {
+    cancelled = reason;
+  }
+
+  /*
+   * called when the steps granted last time are used up, at the operator
+   * about to be evaluated. checks every limit and grants the next steps.
+   */
+  long grant(Token operator) {
+    if (steps >= maxSteps) {
+		throw new RuntimeError(operator, "Evaluation step limit exceeded.");
+	}
+	String reason = cancelled;
+	if (reason != null) {
+		throw new RuntimeError(operator, reason);
+	}
+	if (deadline != 0 && System.nanoTime() - deadline > 0) {
+		throw new RuntimeError(operator, "Evaluation timed out.");
+	}
+
+	long granted = Math.min(CHECK_INTERVAL, maxSteps - steps);
+	steps += granted;
+	return granted;
+  }
+}
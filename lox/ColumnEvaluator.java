@@ -0,0 +1,358 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * One expression over many rows at once: identifiers are bound to columns
+ * (double[] of equal length) and the result is a column too, a double[] for
+ * numbers or a boolean[] for comparisons and `!`.
+ *
+ * Evaluating it row by row with the Interpreter walks the tree and boxes
+ * every intermediate value once per row. Here the tree is walked once,
+ * into a list of steps, and every step is a plain loop over primitive
+ * arrays, BATCH rows at a time so the intermediate columns stay in cache.
+ * The loops are simple enough for the JIT to turn into SIMD code. Written
+ * with jdk.incubator.vector instead, they were no faster (on JDK 17 with
+ * AVX-512, a batch of multiplies took 240 ns against 255, comparisons
+ * 1310 against 1240), and the module needs --add-modules to compile, to
+ * test and at every launch, and prints a warning on every start. So they
+ * stay plain Java until the API leaves the incubator.
+ *
+ * Columns only hold numbers, so the type of every node is known before any
+ * row is looked at. A subtree without identifiers is evaluated once with
+ * the Interpreter (strings and nil can only come from there), and a type
+ * error fails every row alike: it is reported at row 0, which is where
+ * evaluating row by row would have stopped. Without any rows nothing
+ * fails, just as nothing would be evaluated row by row.
+ */
+class ColumnEvaluator {
+  private static final int BATCH = 1024;
+
+  /*
+   * a runtime error of a column evaluation, in the row it happened.
+   */
+  static class RowError extends RuntimeError {
+    final int row;
+
+	RowError(Token token, String message, int row) {
+		super(token, message);
+		this.row = row;
+	}
+  }
+
+  // what a node evaluates to: a column of numbers or booleans, or one value for all rows
+  private static class Slot {
+    final double[] numbers;
+	final boolean[] booleans;
+	final boolean input; // a bound column, indexed by row instead of row in the batch
+	final Object constant;
+
+	private Slot(double[] numbers, boolean[] booleans, boolean input, Object constant) {
+		this.numbers = numbers;
+		this.booleans = booleans;
+		this.input = input;
+		this.constant = constant;
+	}
+
+	boolean isConstant() {
+		return numbers == null && booleans == null;
+	}
+
+	boolean isNumber() {
+		return numbers != null || constant instanceof Double;
+	}
+
+	boolean isBoolean() {
+		return booleans != null || constant instanceof Boolean;
+	}
+  }
+
+  private interface Step {
+    void run(int start, int length);
+  }
+
+  private final Map<String, double[]> columns;
+  private final int rows;
+  private final List<Step> steps = new ArrayList<>();
+  private final Interpreter constants = new Interpreter(new OutputSink.InMemory());
+
+  private ColumnEvaluator(Map<String, double[]> columns) {
+    this.columns = columns;
+	int length = -1;
+	for (Map.Entry<String, double[]> column : columns.entrySet()) {
+		if (length >= 0 && column.getValue().length != length) {
+			throw new IllegalArgumentException("Column '" + column.getKey() + "' has " +
+				column.getValue().length + " rows, expected " + length + ".");
+		}
+		length = column.getValue().length;
+	}
+	if (length < 0) throw new IllegalArgumentException("No columns.");
+	this.rows = length;
+  }
+
+  /*
+   * `expr` for every row of `columns`: a double[] or a boolean[] as long as
+   * the columns. throws a RowError where evaluating row by row would fail.
+   * empty columns give an empty double[] when the type is not known.
+   */
+  static Object evaluate(Expr expr, Map<String, double[]> columns) {
+    ColumnEvaluator evaluator = new ColumnEvaluator(columns);
+	Events.Evaluate event = Events.evaluating(); // one for all the rows
+	long start = Metrics.ENABLED ? System.nanoTime() : 0;
+	boolean failed = true;
+	try {
+		Object value = evaluator.evaluate(expr);
+		failed = false;
+		return value;
+	} finally {
+		Events.evaluated(event, start, expr, failed);
+	}
+  }
+
+  private Object evaluate(Expr expr) {
+    Slot result;
+	try {
+		result = compile(expr);
+	} catch (RowError error) {
+		if (rows == 0) return new double[0]; // no row it could have happened in
+		throw error;
+	}
+	if (rows == 0 && result.isConstant() && !(result.constant instanceof Boolean)) {
+		return new double[0]; // a string or nil for no rows at all
+	}
+	return run(result);
+  }
+
+  private Object run(Slot result) {
+    if (result.isConstant()) {
+		if (result.constant instanceof Double) {
+			double[] filled = new double[rows];
+			Arrays.fill(filled, (double)result.constant);
+			return filled;
+		}
+		if (result.constant instanceof Boolean) {
+			boolean[] filled = new boolean[rows];
+			Arrays.fill(filled, (boolean)result.constant);
+			return filled;
+		}
+		throw new IllegalArgumentException("Result is " + constants.stringify(result.constant) +
+			" for every row, not a number or a boolean.");
+	}
+
+	double[] numbers = result.numbers != null ? new double[rows] : null;
+	boolean[] booleans = result.booleans != null ? new boolean[rows] : null;
+	for (int start = 0; start < rows; start += BATCH) {
+		int length = Math.min(BATCH, rows - start);
+		for (Step step : steps) step.run(start, length);
+
+		int from = result.input ? start : 0;
+		if (numbers != null) {
+			System.arraycopy(result.numbers, from, numbers, start, length);
+		} else {
+			System.arraycopy(result.booleans, from, booleans, start, length);
+		}
+	}
+	return numbers != null ? numbers : booleans;
+  }
+
+  /*
+   * the steps that compute `expr`, children first, in the same order the
+   * interpreter evaluates them so the first error is the same one too.
+   */
+  private Slot compile(Expr expr) {
+    if (expr instanceof Expr.Literal) {
+		return new Slot(null, null, false, ((Expr.Literal)expr).value);
+	}
+	if (expr instanceof Expr.Grouping) {
+		return compile(((Expr.Grouping)expr).expression);
+	}
+	if (expr instanceof Expr.Variable) {
+		Token name = ((Expr.Variable)expr).name;
+		double[] column = columns.get(name.lexeme);
+		if (column == null) throw new RowError(name, "Undefined variable '" + name.lexeme + "'.", 0);
+		return new Slot(column, null, true, null);
+	}
+	if (expr instanceof Expr.Unary) {
+		Expr.Unary unary = (Expr.Unary)expr;
+		return unary(unary.operator, compile(unary.right));
+	}
+
+	Expr.Binary binary = (Expr.Binary)expr;
+	Slot left = compile(binary.left);
+	Slot right = compile(binary.right);
+	return binary(binary.operator, left, right);
+  }
+
+  private Slot unary(Token operator, Slot right) {
+    if (right.isConstant()) {
+		return fold(new Expr.Unary(operator, new Expr.Literal(right.constant)));
+	}
+
+	switch (operator.type) {
+		case MINUS: {
+			if (!right.isNumber()) throw new RowError(operator, "Operand must be a number.", 0);
+			double[] in = right.numbers;
+			boolean input = right.input;
+			double[] out = new double[BATCH];
+			steps.add((start, length) -> {
+				int from = input ? start : 0;
+				for (int i = 0; i < length; i++) out[i] = -in[from + i];
+			});
+			return new Slot(out, null, false, null);
+		}
+		case BANG: {
+			if (right.isNumber()) return new Slot(null, null, false, false); // numbers are truthy
+			boolean[] in = right.booleans;
+			boolean[] out = new boolean[BATCH];
+			steps.add((start, length) -> {
+				for (int i = 0; i < length; i++) out[i] = !in[i];
+			});
+			return new Slot(null, out, false, null);
+		}
+	}
+
+	// unreachable
+	return null;
+  }
+
+  private Slot binary(Token operator, Slot left, Slot right) {
+    if (left.isConstant() && right.isConstant()) {
+		return fold(new Expr.Binary(new Expr.Literal(left.constant), operator,
+			new Expr.Literal(right.constant)));
+	}
+
+	switch (operator.type) {
+		case BANG_EQUAL:
+		case EQUAL_EQUAL: {
+			boolean equal = operator.type == TokenType.EQUAL_EQUAL;
+			if (left.isNumber() && right.isNumber()) return numbers(operator, left, right, false);
+			if (left.isBoolean() && right.isBoolean()) return booleans(equal, left, right);
+			// a column of one type against anything else never matches
+			return new Slot(null, null, false, !equal);
+		}
+		case PLUS:
+			if (left.isNumber() && right.isNumber()) return numbers(operator, left, right, true);
+			throw new RowError(operator, "Operands must be two numbers or two strings.", 0);
+		case MINUS:
+		case SLASH:
+		case STAR:
+			if (left.isNumber() && right.isNumber()) return numbers(operator, left, right, true);
+			throw new RowError(operator, "Operands must be numbers.", 0);
+		case GREATER:
+		case GREATER_EQUAL:
+		case LESS:
+		case LESS_EQUAL:
+			if (left.isNumber() && right.isNumber()) return numbers(operator, left, right, false);
+			throw new RowError(operator, "Operands must be numbers.", 0);
+	}
+
+	// unreachable
+	return null;
+  }
+
+  // evaluate a node whose operands are the same for every row, once
+  private Slot fold(Expr node) {
+    try {
+		return new Slot(null, null, false, constants.evaluate(node));
+	} catch (RuntimeError error) {
+		throw new RowError(error.token, error.getMessage(), 0);
+	}
+  }
+
+  private Slot numbers(Token operator, Slot left, Slot right, boolean arithmetic) {
+    double[] a = numberColumn(left);
+	double[] b = numberColumn(right);
+	boolean aInput = left.input;
+	boolean bInput = right.input;
+	TokenType type = operator.type;
+
+	if (arithmetic) {
+		double[] out = new double[BATCH];
+		steps.add((start, length) ->
+			arithmetic(type, a, aInput ? start : 0, b, bInput ? start : 0, out, length));
+		return new Slot(out, null, false, null);
+	}
+	boolean[] out = new boolean[BATCH];
+	steps.add((start, length) ->
+		comparison(type, a, aInput ? start : 0, b, bInput ? start : 0, out, length));
+	return new Slot(null, out, false, null);
+  }
+
+  private Slot booleans(boolean equal, Slot left, Slot right) {
+    boolean[] a = booleanColumn(left);
+	boolean[] b = booleanColumn(right);
+	boolean[] out = new boolean[BATCH];
+	steps.add((start, length) -> {
+		for (int i = 0; i < length; i++) out[i] = (a[i] == b[i]) == equal;
+	});
+	return new Slot(null, out, false, null);
+  }
+
+  // constants are spread over a whole batch once, so every loop is column by column
+  private static double[] numberColumn(Slot slot) {
+    if (!slot.isConstant()) return slot.numbers;
+	double[] filled = new double[BATCH];
+	Arrays.fill(filled, (double)slot.constant);
+	return filled;
+  }
+
+  private static boolean[] booleanColumn(Slot slot) {
+    if (!slot.isConstant()) return slot.booleans;
+	boolean[] filled = new boolean[BATCH];
+	Arrays.fill(filled, (boolean)slot.constant);
+	return filled;
+  }
+
+  /*
+   * one loop per operator, so that none of them branches per row.
+   */
+  private static void arithmetic(TokenType type, double[] a, int aFrom, double[] b, int bFrom,
+		double[] out, int length) {
+    switch (type) {
+		case PLUS:
+			for (int i = 0; i < length; i++) out[i] = a[aFrom + i] + b[bFrom + i];
+			break;
+		case MINUS:
+			for (int i = 0; i < length; i++) out[i] = a[aFrom + i] - b[bFrom + i];
+			break;
+		case STAR:
+			for (int i = 0; i < length; i++) out[i] = a[aFrom + i] * b[bFrom + i];
+			break;
+		case SLASH:
+			for (int i = 0; i < length; i++) out[i] = a[aFrom + i] / b[bFrom + i];
+			break;
+	}
+  }
+
+  private static void comparison(TokenType type, double[] a, int aFrom, double[] b, int bFrom,
+		boolean[] out, int length) {
+    switch (type) {
+		case GREATER:
+			for (int i = 0; i < length; i++) out[i] = a[aFrom + i] > b[bFrom + i];
+			break;
+		case GREATER_EQUAL:
+			for (int i = 0; i < length; i++) out[i] = a[aFrom + i] >= b[bFrom + i];
+			break;
+		case LESS:
+			for (int i = 0; i < length; i++) out[i] = a[aFrom + i] < b[bFrom + i];
+			break;
+		case LESS_EQUAL:
+			for (int i = 0; i < length; i++) out[i] = a[aFrom + i] <= b[bFrom + i];
+			break;
+		// lox equality is Double.equals: NaN equals itself, 0 and -0 differ
+		case EQUAL_EQUAL:
+			for (int i = 0; i < length; i++) {
+				out[i] = Double.doubleToLongBits(a[aFrom + i]) == Double.doubleToLongBits(b[bFrom + i]);
+			}
+			break;
+		case BANG_EQUAL:
+			for (int i = 0; i < length; i++) {
+				out[i] = Double.doubleToLongBits(a[aFrom + i]) != Double.doubleToLongBits(b[bFrom + i]);
+			}
+			break;
+	}
+  }
+}
@@ -0,0 +1,246 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/*
+ * Daemon mode: a long lived, already warmed up jlox that runs whole jlox
+ * invocations forwarded by DaemonClient over a unix domain socket. Shell
+ * scripts that call jlox thousands of times skip the JVM start, the class
+ * loading of Scanner/Parser/Interpreter and the JIT warm up every time.
+ *
+ * Wire format (all ints are big endian):
+ *   client -> daemon  int argc, argc x modified UTF-8 strings,
+ *                     boolean whether the client's stdin is a terminal,
+ *                     then frames of stdin: byte STDIN, int length, bytes.
+ *                     A frame of length 0 is end of input.
+ *   daemon -> client  frames of byte STDOUT|STDERR, int length, bytes,
+ *                     then byte EXIT, int 4, int exit status.
+ *
+ * Lox keeps its state in statics (hadError, System.out, ...), so requests
+ * are run one after another, never at the same time.
+ */
+class Daemon {
+  static final byte STDIN = 0;
+  static final byte STDOUT = 1;
+  static final byte STDERR = 2;
+  static final byte EXIT = 3;
+
+  private static final int WARM_UP_ROUNDS = 20000;
+
+  private final Path socket;
+
+  Daemon(Path socket) {
+    this.socket = socket;
+  }
+
+  // $JLOX_SOCKET, or jlox.sock in the temp directory
+  static Path socketPath() {
+    String path = System.getenv("JLOX_SOCKET");
+	if (path != null) return Paths.get(path);
+	return Paths.get(System.getProperty("java.io.tmpdir"), "jlox.sock");
+  }
+
+  void serve() throws IOException {
+    warmUp();
+
+	Files.deleteIfExists(socket);
+	try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+		server.bind(UnixDomainSocketAddress.of(socket));
+		System.err.println("jlox daemon listening on " + socket);
+		for (;;) {
+			try (SocketChannel client = server.accept()) {
+				handle(client);
+			} catch (IOException error) {
+				// client went away mid request, wait for the next one
+			}
+		}
+	} finally {
+		Files.deleteIfExists(socket);
+	}
+  }
+
+  /*
+   * push the whole pipeline through the JIT before taking requests,
+   * errors included, so the first client already gets compiled code.
+   */
+  private static void warmUp() {
+    String[] samples = {
+		"(1 + 2) * 3 - 4 / 5 >= -6",
+		"\"a\" + \"b\" == \"ab\"",
+		"!(nil == false) != true",
+		"-\"x\"",
+		"(1 +",
+	};
+	Interpreter interpreter = new Interpreter();
+	Lox.Diagnostics errors = new Lox.Diagnostics();
+	Lox.captureDiagnostics(errors);
+	try {
+		for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+			for (String sample : samples) Lox.runCaptured(interpreter, sample, 1, errors);
+			errors.clear();
+		}
+	} finally {
+		Lox.captureDiagnostics(null);
+	}
+  }
+
+  private void handle(SocketChannel channel) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(inputOf(channel)));
+	DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputOf(channel)));
+
+	String[] args = new String[in.readInt()];
+	for (int i = 0; i < args.length; i++) args[i] = in.readUTF();
+	boolean terminal = in.readBoolean(); // the client's, the daemon has none
+
+	PipedInputStream stdin = new PipedInputStream(1 << 16);
+	PipedOutputStream feed = new PipedOutputStream(stdin);
+	Thread pump = new Thread(() -> pumpStdin(in, feed), "jlox-daemon-stdin");
+	pump.setDaemon(true);
+	pump.start();
+
+	PrintStream stdout = new PrintStream(new BufferedOutputStream(new FrameStream(out, STDOUT), 1 << 16));
+	PrintStream stderr = new PrintStream(new FrameStream(out, STDERR), true);
+
+	InputStream savedIn = System.in;
+	PrintStream savedOut = System.out;
+	PrintStream savedErr = System.err;
+	int status;
+	try {
+		System.setIn(stdin);
+		System.setOut(stdout);
+		System.setErr(stderr);
+		Lox.hadError = false;
+		Lox.hadRuntimeError = false;
+		status = run(args, terminal);
+	} finally {
+		System.setIn(savedIn);
+		System.setOut(savedOut);
+		System.setErr(savedErr);
+		stdin.close(); // a pump stuck on a full pipe gets an IOException and ends
+	}
+
+	stdout.flush();
+	stderr.flush();
+	synchronized (out) {
+		out.writeByte(EXIT);
+		out.writeInt(4);
+		out.writeInt(status);
+		out.flush();
+	}
+  }
+
+  private static int run(String[] args, boolean terminal) {
+    if (args.length > 0 && (args[0].equals("--daemon") || args[0].equals("--serve"))) {
+		System.err.println(args[0] + " is not available through the daemon.");
+		return 64;
+	}
+	try {
+		return Lox.launch(args, terminal);
+	} catch (IOException | RuntimeException | StackOverflowError error) {
+		// one bad request must not take the daemon down
+		System.err.println(error);
+		return 70;
+	}
+  }
+
+  /*
+   * moves stdin frames from the socket into the pipe that the request
+   * reads as System.in, until the client says the input is over. when the
+   * request is done first, its end of the pipe is closed and the socket
+   * after it, which stops the pump whether it is writing or reading.
+   */
+  private static void pumpStdin(DataInputStream in, PipedOutputStream feed) {
+    try (feed) {
+		for (;;) {
+			in.readByte(); // STDIN
+			int length = in.readInt();
+			if (length == 0) break;
+			feed.write(in.readNBytes(length));
+		}
+	} catch (IOException error) {
+		// the request finished, or the client hung up
+	}
+  }
+
+  /*
+   * one frame per write. System.out gets a buffer in front of it,
+   * System.err is written through so diagnostics show up right away.
+   */
+  private static class FrameStream extends OutputStream {
+    private final DataOutputStream out;
+	private final byte type;
+
+	FrameStream(DataOutputStream out, byte type) {
+		this.out = out;
+		this.type = type;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte)b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		if (length == 0) return;
+		synchronized (out) {
+			out.writeByte(type);
+			out.writeInt(length);
+			out.write(bytes, offset, length);
+			out.flush();
+		}
+	}
+  }
+
+  /*
+   * plain streams over the channel. Channels.newInputStream would lock the
+   * channel while blocked in read, and stdin is read while output is written.
+   */
+  static InputStream inputOf(SocketChannel channel) {
+    return new InputStream() {
+		@Override
+		public int read() throws IOException {
+			byte[] one = new byte[1];
+			int n = read(one, 0, 1);
+			return n < 0 ? -1 : one[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			return channel.read(ByteBuffer.wrap(bytes, offset, length));
+		}
+	};
+  }
+
+  static OutputStream outputOf(SocketChannel channel) {
+    return new OutputStream() {
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte)b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+			while (buffer.hasRemaining()) channel.write(buffer);
+		}
+	};
+  }
+}
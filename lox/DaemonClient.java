@@ -0,0 +1,102 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/*
+ * Tiny launcher for daemon mode (jlox --daemon). Takes the same arguments
+ * as jlox, forwards them together with stdin to the daemon, and plays back
+ * stdout, stderr and the exit status it gets in return.
+ *
+ * It only loads JDK classes plus Daemon's socket lookup, never the
+ * Scanner/Parser/Interpreter, so it starts about as fast as a JVM can.
+ */
+public class DaemonClient {
+  public static void main(String[] args) throws IOException {
+    Path socket = Daemon.socketPath();
+	SocketChannel channel;
+	try {
+		channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+	} catch (IOException error) {
+		System.err.println("No jlox daemon at " + socket + ". Start one with: jlox --daemon");
+		System.exit(69);
+		return;
+	}
+
+	System.exit(forward(channel, args, System.console() != null, System.in, System.out, System.err));
+  }
+
+  /*
+   * one invocation over `channel`: sends the arguments and `stdin`, writes
+   * what comes back to `stdout` and `stderr`, and returns the exit status.
+   * `terminal` is whether stdin is a terminal, the daemon can't tell.
+   */
+  static int forward(SocketChannel channel, String[] args, boolean terminal,
+		InputStream stdin, OutputStream stdout, OutputStream stderr) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Daemon.outputOf(channel)));
+	DataInputStream in = new DataInputStream(new BufferedInputStream(Daemon.inputOf(channel)));
+
+	// the daemon has its own working directory, so send it absolute paths
+	out.writeInt(args.length);
+	for (String arg : args) {
+		Path path = Paths.get(arg);
+		out.writeUTF(!arg.startsWith("-") && Files.exists(path) ? path.toAbsolutePath().toString() : arg);
+	}
+	out.writeBoolean(terminal);
+	out.flush();
+
+	Thread pump = new Thread(() -> forwardStdin(stdin, out), "jlox-client-stdin");
+	pump.setDaemon(true);
+	pump.start();
+
+	for (;;) {
+		byte type = in.readByte();
+		int length = in.readInt();
+		if (type == Daemon.EXIT) {
+			int status = in.readInt();
+			stdout.flush();
+			return status;
+		}
+
+		byte[] bytes = in.readNBytes(length);
+		if (type == Daemon.STDOUT) {
+			stdout.write(bytes);
+		} else {
+			stderr.write(bytes);
+			stderr.flush();
+		}
+	}
+  }
+
+  private static void forwardStdin(InputStream stdin, DataOutputStream out) {
+    byte[] buffer = new byte[1 << 16];
+	try {
+		int length;
+		while ((length = stdin.read(buffer)) > 0) {
+			synchronized (out) {
+				out.writeByte(Daemon.STDIN);
+				out.writeInt(length);
+				out.write(buffer, 0, length);
+				out.flush();
+			}
+		}
+		synchronized (out) {
+			out.writeByte(Daemon.STDIN);
+			out.writeInt(0);
+			out.flush();
+		}
+	} catch (IOException error) {
+		// the daemon is done with us
+	}
+  }
+}
@@ -0,0 +1,365 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * A source that gets edited over and over (an editor buffer), together
+ * with its tokens and syntax tree. edit() brings all three up to date
+ * without scanning and parsing everything again:
+ *
+ *   rescanning: start at the last token that ends before the edit and
+ *   scan until a fresh token starts where an old token used to start,
+ *   past the edit. From there on the text is the same, so the old tokens
+ *   are reused, moved by the change in length and in lines.
+ *
+ *   reparsing: find the smallest primary (literal, grouping, variable)
+ *   around the tokens that changed, and parse only its new tokens. That
+ *   is only safe when they parse as exactly one primary again, since a
+ *   primary means the same wherever it appears. Otherwise try the next one out,
+ *   and parse the whole thing as the last resort.
+ *
+ *   the tree around the reparsed piece is rebuilt, sharing whatever comes
+ *   before the edit, so operators after it point at the moved tokens.
+ *
+ * tokens() and tree() always equal what a full scan and parse of source()
+ * would give. Only diagnostics differ: scan errors are reported for the
+ * rescanned part only, and parse errors only when the whole source is
+ * parsed again.
+ *
+ * Trees can be deep (a long `a + b + ...` is as deep as it is long), so
+ * everything here walks them with explicit stacks instead of recursion.
+ */
+class Document {
+  private String source;
+  private List<Token> tokens;
+  private Expr tree;
+  // number of tokens every node of the tree spans
+  private final Map<Expr, Integer> sizes = new IdentityHashMap<>();
+
+  // what the last edit had to redo
+  int rescannedTokens = 0;
+  int reparsedTokens = 0;
+
+  Document(String source) {
+    this.source = source;
+	this.tokens = new Scanner(source).scanTokens();
+	this.tree = new Parser(tokens).parse();
+	if (tree != null) measure(tree);
+  }
+
+  String source() {
+    return source;
+  }
+
+  List<Token> tokens() {
+    return tokens;
+  }
+
+  Expr tree() {
+    return tree;
+  }
+
+  /*
+   * replace `removed` chars at `offset` with `inserted`.
+   */
+  void edit(int offset, int removed, String inserted) {
+    if (offset < 0 || removed < 0 || offset + removed > source.length()) {
+		throw new IndexOutOfBoundsException("Edit outside of the source.");
+	}
+	String edited = source.substring(0, offset) + inserted + source.substring(offset + removed);
+	int delta = inserted.length() - removed;
+
+	// 1. rescan from the end of the last token that is not touched. a number
+	// looks two chars ahead ("1." vs "1.5"), so one char before the edit counts
+	int lo = firstTokenEndingAtOrAfter(offset - 1);
+	int restart = lo == 0 ? 0 : end(tokens.get(lo - 1));
+	int line = lo == 0 ? 1 : tokens.get(lo - 1).line;
+	Scanner scanner = new Scanner(edited, restart, line);
+
+	List<Token> fresh = new ArrayList<>();
+	int hiOld = tokens.size(); // old tokens [lo, hiOld) are replaced by fresh
+	int lineShift = 0;
+	int editEnd = offset + inserted.length();
+	int j = lo;
+	for (;;) {
+		Token token = scanner.nextToken();
+		if (token.offset >= editEnd) {
+			// same state, same text from here on: back in step with the old tokens?
+			int oldOffset = token.offset - delta;
+			while (j < tokens.size() && tokens.get(j).offset < oldOffset) j++;
+			if (j < tokens.size() && tokens.get(j).offset == oldOffset) {
+				hiOld = j;
+				lineShift = token.line - tokens.get(j).line;
+				break;
+			}
+		}
+		fresh.add(token);
+		if (token.type == TokenType.EOF) break;
+	}
+
+	List<Token> next = new ArrayList<>(lo + fresh.size() + tokens.size() - hiOld);
+	next.addAll(tokens.subList(0, lo));
+	next.addAll(fresh);
+	for (int i = hiOld; i < tokens.size(); i++) next.add(moved(tokens.get(i), lineShift, delta));
+	int hiNew = lo + fresh.size();
+	rescannedTokens = fresh.size();
+
+	// 2. reparse as little as possible
+	Expr nextTree = reparse(next, lo, hiOld, hiNew);
+
+	source = edited;
+	tokens = next;
+	tree = nextTree;
+  }
+
+  private Expr reparse(List<Token> next, int lo, int hiOld, int hiNew) {
+    if (tree == null) return parseAll(next);
+
+	// only whitespace or comments changed
+	if (lo == hiOld && lo == hiNew) {
+		reparsedTokens = 0;
+		return relocate(next, lo, hiOld, hiNew, null, null);
+	}
+
+	// literals and groupings around the change, outermost first
+	List<Expr> around = new ArrayList<>();
+	List<Integer> starts = new ArrayList<>();
+	Expr node = tree;
+	int start = 0;
+	while (lo >= start && hiOld <= start + size(node)) {
+		if (isPrimary(node)) {
+			around.add(node);
+			starts.add(start);
+		}
+
+		if (node instanceof Expr.Binary) {
+			Expr.Binary binary = (Expr.Binary)node;
+			int rightStart = start + size(binary.left) + 1;
+			if (hiOld < rightStart) {
+				node = binary.left;
+			} else if (lo >= rightStart) {
+				node = binary.right;
+				start = rightStart;
+			} else {
+				break; // the operator itself changed
+			}
+		} else if (node instanceof Expr.Unary) {
+			if (lo < start + 1) break;
+			node = ((Expr.Unary)node).right;
+			start++;
+		} else if (node instanceof Expr.Grouping) {
+			if (lo < start + 1 || hiOld > start + size(node) - 1) break;
+			node = ((Expr.Grouping)node).expression;
+			start++;
+		} else {
+			break;
+		}
+	}
+
+	for (int i = around.size() - 1; i >= 0; i--) {
+		Expr old = around.get(i);
+		int first = starts.get(i);
+		int last = first + size(old) - hiOld + hiNew; // end in the new tokens
+
+		List<Token> piece = new ArrayList<>(next.subList(first, last));
+		Token after = next.get(last);
+		piece.add(new Token(TokenType.EOF, "", null, after.line, after.offset));
+		Expr replacement = new Parser(piece).parseExactly();
+		if (isPrimary(replacement)) {
+			reparsedTokens = last - first;
+			measure(replacement);
+			Expr relocated = relocate(next, lo, hiOld, hiNew, old, replacement);
+			forget(old);
+			return relocated;
+		}
+	}
+
+	return parseAll(next);
+  }
+
+  private Expr parseAll(List<Token> next) {
+    sizes.clear();
+	reparsedTokens = next.size();
+	Expr parsed = new Parser(next).parse();
+	if (parsed != null) measure(parsed);
+	return parsed;
+  }
+
+  /*
+   * the old tree on top of the new tokens: `target` becomes `replacement`,
+   * nodes before the edit are kept, the rest is rebuilt around the new
+   * operator tokens (or kept too, when those did not move).
+   */
+  private Expr relocate(List<Token> next, int lo, int hiOld, int hiNew,
+		Expr target, Expr replacement) {
+    ArrayDeque<Frame> stack = new ArrayDeque<>();
+	stack.push(new Frame(tree, 0));
+	Expr result = null;
+
+	while (!stack.isEmpty()) {
+		Frame frame = stack.peek();
+		Expr node = frame.node;
+
+		if (frame.state == 0) {
+			int end = frame.start + size(node);
+			boolean unmoved = frame.start >= hiOld && next.get(frame.start - hiOld + hiNew) == tokens.get(frame.start);
+			if (node == target) {
+				result = replacement;
+			} else if (end <= lo || unmoved || node instanceof Expr.Literal) {
+				result = node;
+			} else if (node instanceof Expr.Variable) {
+				result = new Expr.Variable(next.get(frame.start - hiOld + hiNew));
+				sizes.put(result, 1);
+				sizes.remove(node);
+			} else {
+				frame.state = 1;
+				if (node instanceof Expr.Binary) {
+					Expr.Binary binary = (Expr.Binary)node;
+					frame.operator = frame.start + size(binary.left);
+					stack.push(new Frame(binary.left, frame.start));
+				} else if (node instanceof Expr.Unary) {
+					frame.operator = frame.start;
+					stack.push(new Frame(((Expr.Unary)node).right, frame.start + 1));
+				} else {
+					stack.push(new Frame(((Expr.Grouping)node).expression, frame.start + 1));
+				}
+				continue;
+			}
+			stack.pop();
+			continue;
+		}
+
+		if (frame.state == 1 && node instanceof Expr.Binary) {
+			frame.state = 2;
+			frame.left = result;
+			stack.push(new Frame(((Expr.Binary)node).right, frame.operator + 1));
+			continue;
+		}
+
+		stack.pop();
+		int operator = frame.operator < lo ? frame.operator : frame.operator - hiOld + hiNew;
+		result = rebuild(node, frame.left, result, frame.operator < 0 ? null : next.get(operator));
+	}
+	return result;
+  }
+
+  // a primary means the same wherever it appears, see the top
+  private static boolean isPrimary(Expr node) {
+    return node instanceof Expr.Literal || node instanceof Expr.Grouping ||
+		node instanceof Expr.Variable;
+  }
+
+  private static class Frame {
+    final Expr node;
+	final int start; // index of its first token in the old tokens
+	int state = 0;
+	int operator = -1;
+	Expr left;
+
+	Frame(Expr node, int start) {
+		this.node = node;
+		this.start = start;
+	}
+  }
+
+  /*
+   * same node with new children / operator, or the old one when nothing changed.
+   */
+  private Expr rebuild(Expr node, Expr left, Expr right, Token operator) {
+    Expr rebuilt;
+	if (node instanceof Expr.Binary) {
+		Expr.Binary binary = (Expr.Binary)node;
+		if (left == binary.left && right == binary.right && operator == binary.operator) return node;
+		rebuilt = new Expr.Binary(left, operator, right);
+		sizes.put(rebuilt, size(left) + 1 + size(right));
+	} else if (node instanceof Expr.Unary) {
+		Expr.Unary unary = (Expr.Unary)node;
+		if (right == unary.right && operator == unary.operator) return node;
+		rebuilt = new Expr.Unary(operator, right);
+		sizes.put(rebuilt, 1 + size(right));
+	} else {
+		Expr.Grouping grouping = (Expr.Grouping)node;
+		if (right == grouping.expression) return node;
+		rebuilt = new Expr.Grouping(right);
+		sizes.put(rebuilt, 2 + size(right));
+	}
+	sizes.remove(node);
+	return rebuilt;
+  }
+
+  /*
+   * record the size of every node under root. children are always done
+   * before their parent: they come after it in preorder.
+   */
+  private void measure(Expr root) {
+    List<Expr> preorder = preorder(root);
+	for (int i = preorder.size() - 1; i >= 0; i--) {
+		Expr node = preorder.get(i);
+		int size;
+		if (node instanceof Expr.Binary) {
+			size = size(((Expr.Binary)node).left) + 1 + size(((Expr.Binary)node).right);
+		} else if (node instanceof Expr.Unary) {
+			size = 1 + size(((Expr.Unary)node).right);
+		} else if (node instanceof Expr.Grouping) {
+			size = 2 + size(((Expr.Grouping)node).expression);
+		} else {
+			size = 1;
+		}
+		sizes.put(node, size);
+	}
+  }
+
+  private void forget(Expr root) {
+    for (Expr node : preorder(root)) sizes.remove(node);
+  }
+
+  private static List<Expr> preorder(Expr root) {
+    List<Expr> order = new ArrayList<>();
+	ArrayDeque<Expr> stack = new ArrayDeque<>();
+	stack.push(root);
+	while (!stack.isEmpty()) {
+		Expr node = stack.pop();
+		order.add(node);
+		if (node instanceof Expr.Binary) {
+			stack.push(((Expr.Binary)node).right);
+			stack.push(((Expr.Binary)node).left);
+		} else if (node instanceof Expr.Unary) {
+			stack.push(((Expr.Unary)node).right);
+		} else if (node instanceof Expr.Grouping) {
+			stack.push(((Expr.Grouping)node).expression);
+		}
+	}
+	return order;
+  }
+
+  private int size(Expr node) {
+    return sizes.get(node);
+  }
+
+  private int firstTokenEndingAtOrAfter(int offset) {
+    int low = 0;
+	int high = tokens.size() - 1; // EOF ends at the very end, so it always qualifies
+	while (low < high) {
+		int middle = (low + high) >>> 1;
+		if (end(tokens.get(middle)) >= offset) {
+			high = middle;
+		} else {
+			low = middle + 1;
+		}
+	}
+	return low;
+  }
+
+  private static int end(Token token) {
+    return token.offset + token.lexeme.length();
+  }
+
+  private static Token moved(Token token, int lines, int chars) {
+    if (lines == 0 && chars == 0) return token;
+	return new Token(token.type, token.lexeme, token.literal, token.line + lines, token.offset + chars);
+  }
+}
@@ -0,0 +1,24 @@
+package com.craftinginterpreters.lox;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * The values that identifiers stand for. For now only the host program
+ * binds them (define), the language itself cannot assign anything yet.
+ */
+class Environment {
+  private final Map<String, Object> values = new HashMap<>();
+
+  Object get(Token name) {
+    if (values.containsKey(name.lexeme)) {
+		return values.get(name.lexeme);
+	}
+
+	throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+  }
+
+  void define(String name, Object value) {
+    values.put(name, value);
+  }
+}
@@ -0,0 +1,165 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+ * Flight Recorder events for the phases of running lox, so a recording
+ * (-XX:StartFlightRecording, or jcmd JFR.start) shows where the time of
+ * every scan, parse and evaluation went, next to GC and everything else.
+ *
+ * Without a recording, shouldCommit() is false and the JIT drops the
+ * event objects, so they cost next to nothing. The same calls also feed
+ * Metrics when that is on.
+ *
+ * Every way of running lox goes through here. Where a phase does not fit
+ * scan() or parse() (Pipeline streams tokens and statements, the other
+ * evaluators are not an Interpreter.evaluate) the caller begins and ends
+ * the event itself with the -ing and -ed pairs below.
+ */
+final class Events {
+  private Events() {}
+
+  @Name("jlox.Scan")
+  @Label("Scan")
+  @Category("jlox")
+  @StackTrace(false)
+  static class Scan extends Event {
+    @Label("Source Length")
+	@Description("Chars of source, one byte each for ASCII")
+	int chars;
+
+	@Label("Tokens")
+	int tokens;
+  }
+
+  @Name("jlox.Parse")
+  @Label("Parse")
+  @Category("jlox")
+  @StackTrace(false)
+  static class Parse extends Event {
+    @Label("Tokens")
+	int tokens;
+
+	@Label("Nodes")
+	int nodes;
+
+	@Label("Failed")
+	@Description("A syntax error was reported")
+	boolean failed;
+  }
+
+  @Name("jlox.Evaluate")
+  @Label("Evaluate")
+  @Category("jlox")
+  @StackTrace(false)
+  static class Evaluate extends Event {
+    @Label("Nodes")
+	int nodes;
+
+	@Label("Failed")
+	@Description("Ended with a runtime error")
+	boolean failed;
+  }
+
+  static List<Token> scan(Scanner scanner, int chars) {
+    Scan event = scanning();
+	long start = Metrics.ENABLED ? System.nanoTime() : 0;
+	List<Token> tokens = scanner.scanTokens();
+	scanned(event, start, chars, tokens.size());
+	return tokens;
+  }
+
+  static Expr parse(Parser parser, int tokens) {
+    Parse event = parsing();
+	long start = Metrics.ENABLED ? System.nanoTime() : 0;
+	Expr expr = parser.parse();
+	parsed(event, start, tokens, expr == null ? 0 : expr.size, expr == null);
+	return expr;
+  }
+
+  /*
+   * Parser.parseProgram as one event: the statements without a syntax
+   * error, `failed` if there was one.
+   */
+  static List<Stmt> parseProgram(Parser parser, int tokens) {
+    Parse event = parsing();
+	long start = Metrics.ENABLED ? System.nanoTime() : 0;
+	List<Stmt> statements = new ArrayList<>();
+	int nodes = 0;
+	boolean failed = false;
+	while (!parser.isAtEnd()) {
+		Stmt statement = parser.parseStatement();
+		if (statement == null) {
+			failed = true;
+			continue;
+		}
+		statements.add(statement);
+		nodes += size(statement);
+	}
+	parsed(event, start, tokens, nodes, failed);
+	return statements;
+  }
+
+  // the nodes of a statement's expression
+  static int size(Stmt statement) {
+    if (statement instanceof Stmt.Print) return ((Stmt.Print)statement).expression.size;
+	return ((Stmt.Expression)statement).expression.size;
+  }
+
+  static Scan scanning() {
+    Scan event = new Scan();
+	event.begin();
+	return event;
+  }
+
+  static void scanned(Scan event, long start, int chars, int tokens) {
+    if (Metrics.ENABLED) Metrics.scanned(System.nanoTime() - start);
+	if (event.shouldCommit()) {
+		event.chars = chars;
+		event.tokens = tokens;
+		event.commit();
+	}
+  }
+
+  static Parse parsing() {
+    Parse event = new Parse();
+	event.begin();
+	return event;
+  }
+
+  static void parsed(Parse event, long start, int tokens, int nodes, boolean failed) {
+    if (Metrics.ENABLED) Metrics.parsed(System.nanoTime() - start);
+	if (event.shouldCommit()) {
+		event.tokens = tokens;
+		event.nodes = nodes;
+		event.failed = failed;
+		event.commit();
+	}
+  }
+
+  /*
+   * Interpreter.measured has to catch the runtime error itself, and so do
+   * the other evaluators: these take it from there.
+   */
+  static Evaluate evaluating() {
+    Evaluate event = new Evaluate();
+	event.begin();
+	return event;
+  }
+
+  static void evaluated(Evaluate event, long start, Expr expr, boolean failed) {
+    if (Metrics.ENABLED) Metrics.evaluated(System.nanoTime() - start);
+	if (event.shouldCommit()) {
+		event.nodes = expr.size;
+		event.failed = failed;
+		event.commit();
+	}
+  }
+}
@@ -8,9 +8,22 @@ abstract class Expr {
       R visitGroupingExpr(Grouping expr);
       R visitLiteralExpr(Literal expr);
       R visitUnaryExpr(Unary expr);
+      R visitVariableExpr(Variable expr);
   }
+
+  // nodes in this subtree, itself included
+  final int size;
+  // nodes on its longest path down, itself included
+  final int depth;
+
+  Expr(int size, int depth) {
+    this.size = size;
+    this.depth = depth;
+  }
+
   static class Binary extends Expr {
     Binary(Expr left, Token operator, Expr right) {
+    super(1 + left.size + right.size, 1 + Math.max(left.depth, right.depth));
     this.left = left;
     this.operator = operator;
     this.right = right;
@@ -27,6 +40,7 @@ abstract class Expr {
   }
   static class Grouping extends Expr {
     Grouping(Expr expression) {
+    super(1 + expression.size, 1 + expression.depth);
     this.expression = expression;
     }
 
@@ -39,6 +53,7 @@ abstract class Expr {
   }
   static class Literal extends Expr {
     Literal(Object value) {
+    super(1, 1);
     this.value = value;
     }
 
@@ -51,6 +66,7 @@ abstract class Expr {
   }
   static class Unary extends Expr {
     Unary(Token operator, Expr right) {
+    super(1 + right.size, 1 + right.depth);
     this.operator = operator;
     this.right = right;
     }
@@ -63,6 +79,19 @@ abstract class Expr {
     final Token operator;
     final Expr right;
   }
+  static class Variable extends Expr {
+    Variable(Token name) {
+    super(1, 1);
+    this.name = name;
+    }
+
+    @Override
+    <R> R accept(Visitor<R> visitor) {
+     return visitor.visitVariableExpr(this);
+    }
+
+    final Token name;
+  }
 
   abstract <R> R accept(Visitor<R> visitor);
 }
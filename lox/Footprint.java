@@ -0,0 +1,282 @@
+package com.craftinginterpreters.lox;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * How much heap a token list, a syntax tree or a program holds on to, for
+ * sizing the heaps of the workers that keep them:
+ *
+ *   Footprint tokens = Footprint.of(new Scanner(source).scanTokens());
+ *   tokens.bytes                     everything, in bytes
+ *   tokens.perObject("Token")        a token with its lexeme and literal
+ *   tokens.perSourceByte(length)     for a source of that many chars
+ *
+ * Sizes are worked out the way HotSpot lays objects out: a header, the
+ * fields packed without gaps where their alignment allows, rounded up to
+ * the object alignment, for the compressed oops and class pointers this
+ * JVM runs with. Everything reachable from the root counts once, except
+ * what exists anyway (enum constants, Boolean.TRUE and FALSE).
+ * ArrayLists are taken to have grown one add at a time, which is how the
+ * scanner and the parser fill theirs.
+ *
+ * Every object is also charged to an owner, the nearest token or node
+ * above it: a token owns its lexeme, a literal node its value. So owned()
+ * says what a kind of token or node costs with everything only it has.
+ */
+final class Footprint {
+  private static final Layout LAYOUT = Layout.ofThisJvm();
+  private static final Map<Class<?>, Shape> SHAPES = new ConcurrentHashMap<>();
+
+  final long bytes;
+  final long objects;
+  private final Map<String, long[]> shallow; // type -> {count, bytes}
+  private final Map<String, long[]> owned; // owner type -> {count, bytes}
+
+  private Footprint(long bytes, long objects, Map<String, long[]> shallow, Map<String, long[]> owned) {
+    this.bytes = bytes;
+	this.objects = objects;
+	this.shallow = shallow;
+	this.owned = owned;
+  }
+
+  /*
+   * what `root` retains: a List<Token> from the scanner, an Expr, a
+   * List<Stmt>, or anything else built from tokens, nodes, strings,
+   * numbers and ArrayLists.
+   */
+  static Footprint of(Object root) {
+    Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+	Map<String, long[]> shallow = new LinkedHashMap<>();
+	Map<String, long[]> owned = new LinkedHashMap<>();
+	Deque<Object[]> pending = new ArrayDeque<>(); // {object, owner type}, no recursion for deep trees
+	long bytes = 0;
+	long objects = 0;
+
+	pending.push(new Object[] {root, "(root)"});
+	while (!pending.isEmpty()) {
+		Object[] next = pending.pop();
+		Object object = next[0];
+		if (object == null || object instanceof Enum || object instanceof Boolean || !seen.add(object)) continue;
+
+		String type = typeName(object.getClass());
+		String owner = object instanceof Token || object instanceof Expr || object instanceof Stmt
+			? type : (String)next[1];
+		long size = size(object, owner, pending);
+		if (object instanceof String) { // and its array of chars, which nothing else can share
+			long chars = stringChars((String)object);
+			add(shallow, "byte[]", 1, chars);
+			add(owned, owner, 0, chars);
+			bytes += chars;
+			objects++;
+		}
+		bytes += size;
+		objects++;
+		add(shallow, type, 1, size);
+		add(owned, owner, object instanceof Token || object instanceof Expr || object instanceof Stmt ? 1 : 0,
+			size);
+	}
+	return new Footprint(bytes, objects, sort(shallow), sort(owned));
+  }
+
+  // shallow size of `object`, pushing what it refers to
+  private static long size(Object object, String owner, Deque<Object[]> pending) {
+    if (object instanceof String) return LAYOUT.string;
+	if (object instanceof Double) return LAYOUT.boxedDouble;
+	if (object instanceof Object[]) {
+		Object[] array = (Object[])object;
+		for (Object element : array) pending.push(new Object[] {element, owner});
+		return LAYOUT.array(LAYOUT.reference, array.length);
+	}
+	if (object.getClass() == ArrayList.class) {
+		List<?> list = (List<?>)object;
+		for (Object element : list) pending.push(new Object[] {element, owner});
+		int capacity = list.isEmpty() ? 0 : 10;
+		while (capacity < list.size()) capacity += capacity >> 1;
+		return LAYOUT.arrayList + (capacity == 0 ? 0 : LAYOUT.array(LAYOUT.reference, capacity));
+	}
+	if (!object.getClass().getName().startsWith(Footprint.class.getPackageName() + ".")) {
+		throw new IllegalArgumentException("Can not size a " + object.getClass().getName() + ".");
+	}
+
+	Shape shape = SHAPES.computeIfAbsent(object.getClass(), Shape::new);
+	for (Field field : shape.references) {
+		try {
+			pending.push(new Object[] {field.get(object), owner});
+		} catch (IllegalAccessException error) {
+			throw new AssertionError(error); // made accessible in Shape
+		}
+	}
+	return shape.size;
+  }
+
+  // compact strings keep one byte a char until a char does not fit
+  private static long stringChars(String string) {
+    boolean latin1 = string.chars().allMatch(c -> c < 256);
+	return LAYOUT.array(1, latin1 ? string.length() : 2L * string.length());
+  }
+
+  // Expr.Binary rather than com.craftinginterpreters.lox.Expr$Binary
+  private static String typeName(Class<?> type) {
+    if (type.isArray()) return typeName(type.getComponentType()) + "[]";
+	String name = type.getName();
+	return name.substring(name.lastIndexOf('.') + 1).replace('$', '.');
+  }
+
+  private static void add(Map<String, long[]> totals, String type, long count, long bytes) {
+    long[] total = totals.computeIfAbsent(type, key -> new long[2]);
+	total[0] += count;
+	total[1] += bytes;
+  }
+
+  private static Map<String, long[]> sort(Map<String, long[]> totals) {
+    List<Map.Entry<String, long[]>> entries = new ArrayList<>(totals.entrySet());
+	entries.sort((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]));
+	Map<String, long[]> sorted = new LinkedHashMap<>();
+	for (Map.Entry<String, long[]> entry : entries) sorted.put(entry.getKey(), entry.getValue());
+	return sorted;
+  }
+
+  // how many objects of a type there are
+  long count(String type) {
+    long[] total = shallow.get(type);
+	return total == null ? 0 : total[0];
+  }
+
+  // what the objects of a type take themselves
+  long shallow(String type) {
+    long[] total = shallow.get(type);
+	return total == null ? 0 : total[1];
+  }
+
+  // what tokens or nodes of a type take with everything they own
+  long owned(String type) {
+    long[] total = owned.get(type);
+	return total == null ? 0 : total[1];
+  }
+
+  // the same for one of them, on average
+  double perObject(String type) {
+    long count = count(type);
+	return count == 0 ? 0 : (double)owned(type) / count;
+  }
+
+  // all of it per char of the source it came from
+  double perSourceByte(long sourceLength) {
+    return sourceLength == 0 ? 0 : (double)bytes / sourceLength;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder out = new StringBuilder();
+	out.append(String.format("%d objects, %d bytes%n", objects, bytes));
+	out.append(String.format("%n  %-16s %10s %12s %10s%n", "owner", "count", "bytes", "each"));
+	for (Map.Entry<String, long[]> entry : owned.entrySet()) {
+		long[] total = entry.getValue();
+		out.append(String.format("  %-16s %10d %12d %10s%n", entry.getKey(), total[0], total[1],
+			total[0] == 0 ? "" : String.format("%.1f", (double)total[1] / total[0])));
+	}
+	out.append(String.format("%n  %-16s %10s %12s%n", "type", "count", "bytes"));
+	for (Map.Entry<String, long[]> entry : shallow.entrySet()) {
+		out.append(String.format("  %-16s %10d %12d%n", entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+	}
+	return out.toString();
+  }
+
+  /*
+   * the fields of one of our classes and what an instance of it takes.
+   */
+  private static class Shape {
+    final long size;
+	final List<Field> references = new ArrayList<>();
+
+	Shape(Class<?> type) {
+		long small = 0; // fields of 4 bytes or less, they fill the gap after the header
+		long large = 0;
+		for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers())) continue;
+				long bytes = LAYOUT.field(field.getType());
+				if (bytes == 8) large += bytes; else small += bytes;
+				if (!field.getType().isPrimitive()) {
+					field.setAccessible(true);
+					references.add(field);
+				}
+			}
+		}
+		this.size = LAYOUT.instance(small, large);
+	}
+  }
+
+  /*
+   * object sizes on this JVM. without HotSpot's diagnostic bean the usual
+   * defaults of a heap under 32g are assumed.
+   */
+  private static class Layout {
+    final int header;
+	final int arrayHeader;
+	final int reference;
+	final int alignment;
+	final long string;
+	final long boxedDouble;
+	final long arrayList;
+
+	Layout(boolean compressedOops, boolean compressedClasses, int alignment) {
+		this.header = compressedClasses ? 12 : 16;
+		this.arrayHeader = header + 4; // and the length
+		this.reference = compressedOops ? 4 : 8;
+		this.alignment = alignment;
+		this.string = instance(reference + 4 + 1 + 1, 0); // value, hash, coder, hashIsZero
+		this.boxedDouble = instance(0, 8);
+		this.arrayList = instance(4 + 4 + reference, 0); // modCount, size, elementData
+	}
+
+	static Layout ofThisJvm() {
+		try {
+			HotSpotDiagnosticMXBean hotspot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+			return new Layout(
+				Boolean.parseBoolean(hotspot.getVMOption("UseCompressedOops").getValue()),
+				Boolean.parseBoolean(hotspot.getVMOption("UseCompressedClassPointers").getValue()),
+				Integer.parseInt(hotspot.getVMOption("ObjectAlignmentInBytes").getValue()));
+		} catch (RuntimeException error) {
+			return new Layout(true, true, 8);
+		}
+	}
+
+	long field(Class<?> type) {
+		if (type == long.class || type == double.class) return 8;
+		if (type == int.class || type == float.class) return 4;
+		if (type == short.class || type == char.class) return 2;
+		if (type == byte.class || type == boolean.class) return 1;
+		return reference;
+	}
+
+	// 8 byte fields have to start at a multiple of 8, the others go into the gap before
+	long instance(long small, long large) {
+		long size = large == 0 ? header + small
+			: align(header, 8) + large + Math.max(0, small - (align(header, 8) - header));
+		return align(size, alignment);
+	}
+
+	long array(long elementSize, long length) {
+		long base = elementSize == 8 ? align(arrayHeader, 8) : arrayHeader;
+		return align(base + elementSize * length, alignment);
+	}
+
+	private static long align(long size, long alignment) {
+		return (size + alignment - 1) / alignment * alignment;
+	}
+  }
+}
@@ -1,19 +1,67 @@
 package com.craftinginterpreters.lox;
 
+import java.util.List;
+
 // declaring hat it is a visitor
-// return type is an object
-class Interpreter implements Expr.Visitor<Object> {
+// return type is an object, statements return nothing
+class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
+		final OutputSink output; // where interpret() prints results
+		final Environment environment = new Environment(); // values of identifiers
+		private Budget budget; // limits of the evaluation in progress, null for none
+		private long fuel = Long.MAX_VALUE; // operators left before asking the budget again
+		private int maxString = Integer.MAX_VALUE; // the budget's, kept here for string +
+
+		Interpreter() {
+		  this(OutputSink.toStdout(OutputSink.Flush.LINE));
+		}
+
+		Interpreter(OutputSink output) {
+		  this.output = output;
+		}
+
 		// Interpreter's public API
 		void interpret(Expr expression) {
 		  try {
-		    Object value = evaluate(expression);
-			System.out.println(stringify(value));
+		    Object value = measured(expression);
+			output.print(value);
 		  } catch (RuntimeError error) { // java catch Runtime error
-		    Lox.runtimeError(error); // Lox prints out error message and let the user now
+		    output.flush(); // the results before it come first when output is buffered
+			Lox.runtimeError(error); // Lox prints out error message and let the user now
 		  }
 		}
 
-		private String stringify(Object object) {
+		/*
+		 * run a whole program. it stops at the first runtime error.
+		 */
+		void interpret(List<Stmt> statements) {
+		  try {
+		    for (Stmt statement : statements) {
+			  execute(statement);
+			}
+		  } catch (RuntimeError error) {
+		    output.flush();
+			Lox.runtimeError(error);
+		  }
+		}
+
+		void execute(Stmt stmt) {
+		  stmt.accept(this);
+		}
+
+		@Override
+		public Void visitExpressionStmt(Stmt.Expression stmt) {
+		  measured(stmt.expression); // only for its errors, there are no side effects yet
+		  return null;
+		}
+
+		@Override
+		public Void visitPrintStmt(Stmt.Print stmt) {
+		  Object value = measured(stmt.expression);
+		  output.print(value);
+		  return null;
+		}
+
+		String stringify(Object object) {
 		  if (object == null) return "nil";
 
 		  if (object instanceof Double) {
@@ -35,6 +83,11 @@ class Interpreter implements Expr.Visitor<Object> {
 		  return expr.value;
 		}
 
+		@Override
+		public Object visitVariableExpr(Expr.Variable expr) {
+		  return environment.get(expr.name);
+		}
+
 		@Override
 		public Object visitGroupingExpr(Expr.Grouping expr) {
 		  return evaluate(expr.expression); // recursively evaluate the subexpression and return it
@@ -42,6 +95,8 @@ class Interpreter implements Expr.Visitor<Object> {
 
 		@Override
 		public Object visitUnaryExpr(Expr.Unary expr) {
+		  if (--fuel < 0) refuel(expr.operator);
+		  if (Metrics.ENABLED) Metrics.operator(expr.operator.type);
 		  Object right = evaluate(expr.right);
 
 		  switch (expr.operator.type) { // remember that expr operator is a token that contains the type field
@@ -67,12 +122,61 @@ class Interpreter implements Expr.Visitor<Object> {
 		 * helper fn for visitGrouping Expr
 		 * sends the expression back into the interpreter's visitor implementation
 		 */
-		private Object evaluate(Expr expr) {
+		Object evaluate(Expr expr) {
 		  return expr.accept(this);
 		}
 
+		/*
+		 * evaluate() of a whole expression, as one jlox.Evaluate event and
+		 * one evaluation in Metrics. subexpressions go through evaluate().
+		 */
+		Object measured(Expr expr) {
+		  Events.Evaluate event = Events.evaluating();
+		  long start = Metrics.ENABLED ? System.nanoTime() : 0;
+		  boolean failed = true;
+		  try {
+		    Object value = evaluate(expr);
+			failed = false;
+			return value;
+		  } finally {
+		    Events.evaluated(event, start, expr, failed);
+		  }
+		}
+
+		/*
+		 * evaluate within the given budget (null for none). running out of
+		 * it throws a RuntimeError like any other error in the expression.
+		 */
+		Object evaluate(Expr expr, Budget budget) {
+		  this.budget = budget;
+		  this.fuel = budget == null ? Long.MAX_VALUE : 0; // check it right away
+		  this.maxString = budget == null ? Integer.MAX_VALUE : budget.maxStringLength;
+		  try {
+		    return measured(expr);
+		  } finally {
+		    this.budget = null;
+		    this.fuel = Long.MAX_VALUE;
+		    this.maxString = Integer.MAX_VALUE;
+		  }
+		}
+
+		/*
+		 * HELPER FN: refuel
+		 * the operators granted by the budget are used up, ask for more.
+		 * without a budget this never really happens.
+		 */
+		private void refuel(Token operator) {
+		  if (budget == null) {
+		    fuel = Long.MAX_VALUE;
+		    return;
+		  }
+		  fuel = budget.grant(operator) - 1; // minus the operator at hand
+		}
+
 		@Override
 		public Object visitBinaryExpr(Expr.Binary expr){
+		  if (--fuel < 0) refuel(expr.operator);
+		  if (Metrics.ENABLED) Metrics.operator(expr.operator.type);
 		  Object left = evaluate(expr.left);
 		  Object right = evaluate(expr.right);
 
@@ -96,8 +200,10 @@ class Interpreter implements Expr.Visitor<Object> {
 				if (left instanceof Double && right instanceof Double) {
 				  return (double)left + (double)right;
 				}
-				if (left instanceof String && right instanceof String) {
-				  return (String)left + (String)right;
+				if (Rope.isString(left) && Rope.isString(right)) {
+				  Object joined = Rope.concat(left, right, maxString); // O(1), copied once when printed
+				  if (joined == null) throw new RuntimeError(expr.operator, "String too long.");
+				  return joined;
 				}
 
 				throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings.");
@@ -125,6 +231,8 @@ class Interpreter implements Expr.Visitor<Object> {
 	  }
 
       private boolean isEqual(Object a, Object b) {
+		a = Rope.flatten(a);
+		b = Rope.flatten(b);
 		if (a == null && b == null) return true;
 		if (a == null) return false;
 
@@ -0,0 +1,60 @@
+package com.craftinginterpreters.lox;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Lock free histogram of durations in nanoseconds.
+ *
+ * Buckets are log2 based with 16 linear sub buckets per power of two, so any
+ * recorded value is off by at most 1/16 (~6%) while the whole range of a
+ * long fits in under a thousand counters. Good enough for p50/p99.
+ */
+class LatencyHistogram {
+  private static final int SUB_BUCKETS = 16;
+  private static final int SUB_BITS = 4;
+
+  private final AtomicLongArray counts = new AtomicLongArray(60 * SUB_BUCKETS);
+
+  void record(long nanos) {
+    counts.incrementAndGet(indexOf(Math.max(0, nanos)));
+  }
+
+  long count() {
+    long total = 0;
+	for (int i = 0; i < counts.length(); i++) total += counts.get(i);
+	return total;
+  }
+
+  /*
+   * value at the given quantile (0.5 for the median, 0.99 for p99),
+   * reported as the lower bound of the bucket it falls in.
+   */
+  long percentile(double quantile) {
+    long total = count();
+	if (total == 0) return 0;
+
+	long rank = Math.max(1, (long)Math.ceil(quantile * total));
+	long seen = 0;
+	for (int i = 0; i < counts.length(); i++) {
+		seen += counts.get(i);
+		if (seen >= rank) return lowerBound(i);
+	}
+	return lowerBound(counts.length() - 1);
+  }
+
+  private static int indexOf(long value) {
+    if (value < SUB_BUCKETS) return (int)value; // small values are exact
+
+	int exponent = 63 - Long.numberOfLeadingZeros(value);
+	int sub = (int)((value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+	return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+  }
+
+  private static long lowerBound(int index) {
+    if (index < SUB_BUCKETS) return index;
+
+	int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+	long sub = index % SUB_BUCKETS;
+	return (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+  }
+}
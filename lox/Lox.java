@@ -3,29 +3,373 @@ package com.craftinginterpreters.lox;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 public class Lox {
-  private static final Interpreter interpreter = new Interpreter();
   static boolean hadError = false;
   static boolean hadRuntimeError = false;
+
+  // when set for a thread, its diagnostics are buffered here instead of
+  // going straight to System.err (batch mode keeps them in input order)
+  private static final ThreadLocal<Diagnostics> diagnostics = new ThreadLocal<>();
+
+  /*
+   * what a thread with captured diagnostics reported: the text, and which
+   * kinds of error there were. such a thread never sets hadError or
+   * hadRuntimeError, those are for the one thread running a script.
+   */
+  static class Diagnostics {
+    final StringBuilder text = new StringBuilder();
+	boolean hadError = false;
+	boolean hadRuntimeError = false;
+
+	int length() {
+		return text.length();
+	}
+
+	void clear() {
+		text.setLength(0);
+		hadError = false;
+		hadRuntimeError = false;
+	}
+
+	@Override
+	public String toString() {
+		return text.toString();
+	}
+  }
+
+  /*
+   * thrown instead of calling System.exit directly, so that the daemon can
+   * finish one request without taking the whole process down with it.
+   */
+  static class Exit extends RuntimeException {
+    final int status;
+
+	Exit(int status) {
+		super(null, null, false, false);
+		this.status = status;
+	}
+  }
+
   public static void main(String[] args) throws IOException {
-    if (args.length > 1){
-		System.out.println("Usage: jlox [script]");
-		System.exit(64);
-	} else if (args.length == 1){
-		runFile(args[0]);
-	} else{
-		runPrompt();
+    int status = launch(args, System.console() != null);
+	if (status != 0) System.exit(status);
+  }
+
+  /*
+   * everything main does, but hands the exit status back instead of exiting.
+   * `terminal` tells whether somebody is typing at stdin, which is what
+   * picks the REPL over pipe mode when there is no script.
+   */
+  static int launch(String[] args, boolean terminal) throws IOException {
+    try {
+		if (args.length > 0 && args[0].equals("--batch")) {
+			runBatch(args);
+		} else if (args.length > 0 && args[0].equals("--program")) {
+			runProgram(args);
+		} else if (args.length > 0 && args[0].equals("--parallel")) {
+			runParallel(args);
+		} else if (args.length > 0 && args[0].equals("--profile")) {
+			runProfile(args);
+		} else if (args.length > 0 && args[0].equals("--serve")) {
+			runServer(args);
+		} else if (args.length > 0 && args[0].equals("--daemon")) {
+			runDaemon(args);
+		} else if (args.length == 1 && args[0].equals("--pipe")) {
+			runPipe();
+		} else if (args.length > 1){
+			System.out.println("Usage: jlox [--batch [--threads n] | --program [--sequential | --stream-output] | " +
+				"--parallel [--threads n] | --profile [--program] | " +
+				"--serve [--port n] [--max-active n] | --daemon [socket] | --pipe] [script]");
+			throw new Exit(64);
+		} else if (args.length == 1){
+			runFile(args[0]);
+		} else if (!terminal) {
+			runPipe(); // nobody at a terminal to see the prompts
+		} else{
+			runPrompt();
+		}
+		return 0;
+	} catch (Exit exit) {
+		return exit.status;
 	}
   }
 
   private static void runFile(String path) throws IOException {
     byte[] bytes = Files.readAllBytes(Paths.get(path));
-	run(new String(bytes, Charset.defaultCharset()));
+	run(new Interpreter(), new String(bytes, Charset.defaultCharset()));
+  }
+
+  /*
+   * batch mode: every line of the script is an independent expression.
+   * lines are evaluated in parallel but printed in input order.
+   *   jlox --batch [--threads n] script
+   */
+  private static void runBatch(String[] args) throws IOException {
+    int threads = ForkJoinPool.getCommonPoolParallelism();
+	String path = null;
+	String usage = "Usage: jlox --batch [--threads n] script";
+	for (int i = 1; i < args.length; i++) {
+		if (args[i].equals("--threads")) {
+			threads = (int)option(args, ++i, 1, usage);
+		} else {
+			path = args[i];
+		}
+	}
+	if (path == null) usage(usage);
+
+	ExecutorService executor = new ForkJoinPool(threads);
+	BatchRunner runner = new BatchRunner(executor, threads * 4);
+	try (BufferedReader reader = Files.newBufferedReader(Paths.get(path), Charset.defaultCharset())) {
+		runner.run(reader, System.out, System.err);
+	} finally {
+		executor.shutdown();
+	}
+
+	if (runner.hadError) throw new Exit(65);
+	if (runner.hadRuntimeError) throw new Exit(70);
+  }
+
+  /*
+   * program mode: the script is a list of statements (`print 1 + 2;`).
+   * scanning, parsing and running overlap (see Pipeline), unless
+   * --sequential asks for one phase after the other. both print the same.
+   * --stream-output shows output before the program is known to parse,
+   * and then runs the statements before a syntax error, which
+   * --sequential would not.
+   *   jlox --program [--sequential | --stream-output] script
+   */
+  private static void runProgram(String[] args) throws IOException {
+    boolean sequential = args.length == 3 && args[1].equals("--sequential");
+	boolean stream = args.length == 3 && args[1].equals("--stream-output");
+	if (args.length != 2 && !sequential && !stream) {
+		System.out.println("Usage: jlox --program [--sequential | --stream-output] script");
+		throw new Exit(64);
+	}
+	String source = new String(Files.readAllBytes(Paths.get(args[args.length - 1])), Charset.defaultCharset());
+
+	if (sequential) {
+		// same buffering as the pipeline, so that only the overlap differs
+		Interpreter interpreter = new Interpreter(OutputSink.to(System.out, OutputSink.Flush.BYTES, 1 << 16));
+		try {
+			List<Token> tokens = Events.scan(new Scanner(source), source.length());
+			List<Stmt> statements = Events.parseProgram(new Parser(tokens), tokens.size());
+			if (!hadError) interpreter.interpret(statements);
+		} finally {
+			interpreter.output.flush();
+		}
+	} else {
+		try {
+			new Pipeline(System.out, stream).run(source);
+		} catch (InterruptedException error) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	if (hadError) throw new Exit(65);
+	if (hadRuntimeError) throw new Exit(70);
+  }
+
+  /*
+   * parallel mode: the script is one big expression, evaluated on several
+   * threads (see ParallelEvaluator). --repeat evaluates it that many times
+   * and prints the last result, to time evaluation apart from startup.
+   *   jlox --parallel [--threads n] [--repeat n] script
+   */
+  private static void runParallel(String[] args) throws IOException {
+    int threads = ForkJoinPool.getCommonPoolParallelism();
+	int repeat = 1;
+	String path = null;
+	String usage = "Usage: jlox --parallel [--threads n] [--repeat n] script";
+	for (int i = 1; i < args.length; i++) {
+		if (args[i].equals("--threads")) {
+			threads = (int)option(args, ++i, 1, usage);
+		} else if (args[i].equals("--repeat")) {
+			repeat = (int)option(args, ++i, 1, usage);
+		} else {
+			path = args[i];
+		}
+	}
+	if (path == null) usage(usage);
+
+	String source = new String(Files.readAllBytes(Paths.get(path)), Charset.defaultCharset());
+	List<Token> tokens = Events.scan(new Scanner(source), source.length());
+	Expr expression = Events.parse(new Parser(tokens), tokens.size());
+	if (hadError) throw new Exit(65);
+
+	ForkJoinPool pool = new ForkJoinPool(threads);
+	Interpreter interpreter = new Interpreter();
+	try {
+		ParallelEvaluator evaluator = new ParallelEvaluator(pool, interpreter.environment);
+		Object value = null;
+		for (int i = 0; i < repeat; i++) value = evaluator.evaluate(expression);
+		interpreter.output.print(value);
+	} catch (RuntimeError error) {
+		runtimeError(error);
+		throw new Exit(70);
+	} finally {
+		pool.shutdown();
+	}
+  }
+
+  /*
+   * profile mode: run the script (one expression, or statements with
+   * --program) under the Profiler and print where its time and allocations
+   * went to stderr. --repeat runs it that many times in one profile,
+   * --stacks and --alloc-stacks also write them as collapsed stacks.
+   *   jlox --profile [--program] [--repeat n] [--top n]
+   *                  [--stacks file] [--alloc-stacks file] script
+   */
+  private static void runProfile(String[] args) throws IOException {
+    boolean program = false;
+	int repeat = 1;
+	int top = 20;
+	String stacks = null;
+	String allocStacks = null;
+	String path = null;
+	String usage = "Usage: jlox --profile [--program] [--repeat n] [--top n] " +
+		"[--stacks file] [--alloc-stacks file] script";
+	for (int i = 1; i < args.length; i++) {
+		if (args[i].equals("--program")) {
+			program = true;
+		} else if (args[i].equals("--repeat")) {
+			repeat = (int)option(args, ++i, 1, usage);
+		} else if (args[i].equals("--top")) {
+			top = (int)option(args, ++i, 0, usage);
+		} else if (args[i].equals("--stacks")) {
+			if (++i == args.length) usage(usage);
+			stacks = args[i];
+		} else if (args[i].equals("--alloc-stacks")) {
+			if (++i == args.length) usage(usage);
+			allocStacks = args[i];
+		} else {
+			path = args[i];
+		}
+	}
+	if (path == null) usage(usage);
+
+	String source = new String(Files.readAllBytes(Paths.get(path)), Charset.defaultCharset());
+	List<Token> tokens = Events.scan(new Scanner(source), source.length());
+	Parser parser = new Parser(tokens);
+	List<Stmt> statements = program ? Events.parseProgram(parser, tokens.size()) : null;
+	Expr expression = program ? null : Events.parse(parser, tokens.size());
+	if (hadError) throw new Exit(65);
+
+	Profiler profiler = new Profiler(source, Paths.get(path).getFileName().toString(),
+		OutputSink.toStdout(OutputSink.Flush.LINE));
+	try {
+		// an expression prints its last value (as --parallel does), a program prints every run
+		Object value = null;
+		for (int i = 0; i < repeat; i++) {
+			if (program) {
+				profiler.profile(statements);
+			} else {
+				value = profiler.profile(expression);
+			}
+		}
+		if (!program) profiler.output.print(value);
+	} catch (RuntimeError error) {
+		runtimeError(error); // still worth a report, up to where it stopped
+	} finally {
+		profiler.output.flush();
+	}
+
+	profiler.report(System.err, top);
+	if (stacks != null) writeStacks(profiler, stacks, false);
+	if (allocStacks != null) writeStacks(profiler, allocStacks, true);
+	if (hadRuntimeError) throw new Exit(70);
+  }
+
+  private static void writeStacks(Profiler profiler, String path, boolean bytes) throws IOException {
+    try (Writer out = Files.newBufferedWriter(Paths.get(path), Charset.defaultCharset())) {
+		profiler.writeStacks(out, bytes);
+	}
+  }
+
+  /*
+   * server mode: answer expressions sent over a local TCP socket.
+   * every request can be held to a budget (see Budget), 0 is no limit.
+   * only the depth has a limit by default, as too deep an expression
+   * would overflow the stack of the thread running it.
+   *   jlox --serve [--port n] [--max-active n] [--max-steps n]
+   *                [--timeout-ms n] [--max-string n] [--max-depth n]
+   */
+  private static void runServer(String[] args) throws IOException {
+    int port = 7878;
+	int maxActive = Runtime.getRuntime().availableProcessors();
+	long maxSteps = 0;
+	long timeoutMillis = 0;
+	int maxString = 0;
+	int maxDepth = Server.DEFAULT_MAX_DEPTH;
+	String usage = "Usage: jlox --serve [--port n] [--max-active n] " +
+		"[--max-steps n] [--timeout-ms n] [--max-string n] [--max-depth n]";
+	for (int i = 1; i < args.length; i++) {
+		if (args[i].equals("--port")) {
+			port = (int)option(args, ++i, 0, 65535, usage);
+		} else if (args[i].equals("--max-active")) {
+			maxActive = (int)option(args, ++i, 1, usage);
+		} else if (args[i].equals("--max-steps")) {
+			maxSteps = option(args, ++i, 0, Long.MAX_VALUE, usage);
+		} else if (args[i].equals("--timeout-ms")) {
+			timeoutMillis = option(args, ++i, 0, Long.MAX_VALUE / 1_000_000, usage);
+		} else if (args[i].equals("--max-string")) {
+			maxString = (int)option(args, ++i, 0, usage);
+		} else if (args[i].equals("--max-depth")) {
+			maxDepth = (int)option(args, ++i, 0, usage);
+		} else {
+			usage(usage);
+		}
+	}
+
+	new Server(port, maxActive, maxSteps, timeoutMillis * 1_000_000, maxString, maxDepth).serve();
+  }
+
+  /*
+   * the number after an option such as --threads, at args[i], which has
+   * to be at least `min`. anything else is a usage error.
+   */
+  private static long option(String[] args, int i, long min, String usage) {
+    return option(args, i, min, Integer.MAX_VALUE, usage);
+  }
+
+  private static long option(String[] args, int i, long min, long max, String usage) {
+    if (i >= args.length) usage(usage);
+	try {
+		long value = Long.parseLong(args[i]);
+		if (value >= min && value <= max) return value;
+	} catch (NumberFormatException error) {
+		// the usage below says what was expected
+	}
+	System.out.println("Invalid value '" + args[i] + "' for " + args[i - 1] + ".");
+	usage(usage);
+	return min; // not reached
+  }
+
+  private static void usage(String usage) {
+    System.out.println(usage);
+	throw new Exit(64);
+  }
+
+  /*
+   * daemon mode: stay up and warm, and run whole jlox invocations that
+   * DaemonClient forwards over a unix domain socket.
+   *   jlox --daemon [socket]
+   */
+  private static void runDaemon(String[] args) throws IOException {
+    if (args.length > 2) {
+		System.out.println("Usage: jlox --daemon [socket]");
+		throw new Exit(64);
+	}
+	Path socket = args.length == 2 ? Paths.get(args[1]) : Daemon.socketPath();
+	new Daemon(socket).serve();
   }
 
   /*
@@ -34,35 +378,117 @@ public class Lox {
   private static void runPrompt() throws IOException {
     InputStreamReader input = new InputStreamReader(System.in);
 	BufferedReader reader = new BufferedReader(input);
+	Interpreter interpreter = new Interpreter();
 
 	for (;;) { // for loop forever which is the loop in REPL
 		System.out.print("> ");
+		System.out.flush(); // stdout may be buffered (daemon mode)
 		String line = reader.readLine(); // read a line of input from the user then returns the result
 		if (line == null) break; // check if a signal is ctrl-D which returns null and will break the loop
-		run(line); // eval the command which is the E in REPL
+		run(interpreter, line); // eval the command which is the E in REPL
 		hadError = false; // add this hadError to false so that repl does not exit when user makes a mistake
 	}
   }
 
+  /*
+   * pipe mode: the REPL without the prompt, for when stdin is a pipe.
+   * a separate thread reads stdin in big blocks (see PipeReader) while this
+   * one evaluates, and results are buffered and flushed whenever the reader
+   * has nothing queued up instead of once per line.
+   */
+  private static void runPipe() throws IOException {
+    PipeReader pipe = new PipeReader(System.in, Charset.defaultCharset());
+	Thread reader = new Thread(pipe, "jlox-pipe-reader");
+	reader.setDaemon(true);
+	reader.start();
+
+	// results go through a big buffer instead of a flush per line
+	OutputSink out = OutputSink.to(System.out, OutputSink.Flush.BYTES, 1 << 16);
+	Interpreter interpreter = new Interpreter(out);
+	try {
+		List<String> batch;
+		while ((batch = pipe.next()) != null) {
+			for (String line : batch) {
+				run(interpreter, line);
+				hadError = false; // same as the REPL
+			}
+			if (pipe.isIdle()) out.flush();
+		}
+	} catch (InterruptedException error) {
+		Thread.currentThread().interrupt();
+	} finally {
+		out.flush();
+		reader.interrupt();
+	}
+  }
+
   // Baby steps: printing the token only when running the interpreter
   // since the interpreter hasnt been implemented yet
-  private static void run(String source) {
+  private static void run(Interpreter interpreter, String source) {
     // Indicate an error in the exit code.
-    if (hadError) System.exit(65);
-	if (hadRuntimeError) System.exit(70);
-    Scanner scanner = new Scanner(source);
-	List<Token> tokens = scanner.scanTokens();
+    if (hadError) throw new Exit(65);
+	if (hadRuntimeError) throw new Exit(70);
 
-	// instantiating the parser
-    Parser parser = new Parser(tokens);
-	Expr expression = parser.parse();
+	// syntax errors are held until the results before them are out
+	Diagnostics errors = new Diagnostics();
+	Expr expression;
+	captureDiagnostics(errors);
+	try {
+		Scanner scanner = new Scanner(source);
+		List<Token> tokens = Events.scan(scanner, source.length());
+
+		// instantiating the parser
+		Parser parser = new Parser(tokens);
+		expression = Events.parse(parser, tokens.size());
+	} finally {
+		captureDiagnostics(null);
+	}
 
 	// Stop when syntax error is detected
-	if (hadError) return;
+	if (errors.hadError) {
+		interpreter.output.flush();
+		System.err.print(errors);
+		hadError = true;
+		return;
+	}
 
 	interpreter.interpret(expression);
   }
 
+  /*
+   * run() for one independent unit of source (a line in batch mode, a request
+   * in server mode). The calling thread must have its diagnostics captured
+   * into `errors`: that is how we tell a failed unit from a good one without
+   * looking at the global hadError flag that other threads share.
+   *
+   * returns the printed value, or null when an error was reported. input
+   * nested too deeply for the stack is an error of the unit too, not of
+   * the thread running it.
+   */
+  static String runCaptured(Interpreter interpreter, String source, int line, Diagnostics errors) {
+    return runCaptured(interpreter, source, line, errors, null);
+  }
+
+  // same, but the evaluation has to stay within `budget` (null for none)
+  static String runCaptured(Interpreter interpreter, String source, int line, Diagnostics errors,
+		Budget budget) {
+    int errorsBefore = errors.length();
+	try {
+		List<Token> tokens = Events.scan(new Scanner(source, line), source.length());
+		Parser parser = new Parser(tokens, budget == null ? 0 : budget.maxDepth);
+		Expr expression = Events.parse(parser, tokens.size());
+		if (expression == null || errors.length() != errorsBefore) return null;
+
+		return interpreter.stringify(interpreter.evaluate(expression, budget));
+	} catch (RuntimeError error) {
+		runtimeError(error);
+		return null;
+	} catch (StackOverflowError error) {
+		report(line, "", "Expression nested too deeply.");
+		return null;
+	}
+  }
+
   /*
    * Error handling: Very important when things go wrong so that the user
    * of the language will be guided to what they __actually__ want to do
@@ -74,15 +500,21 @@ public class Lox {
    * and the code that reports error.
    */
   static void error(int line, String message) {
+    if (Metrics.ENABLED) Metrics.scanError();
     report(line, "", message);
   }
 
   private static void report(int line, String where, String message) {
-    System.err.println("[line " + line + "] Error" + where + ": " + message);
-	hadError = true;
+    Diagnostics captured = printError("[line " + line + "] Error" + where + ": " + message);
+	if (captured == null) {
+		hadError = true;
+	} else {
+		captured.hadError = true;
+	}
   }
 
   static void error(Token token, String message) {
+		if (Metrics.ENABLED) Metrics.parseError();
 		if (token.type == TokenType.EOF) {
 		  report(token.line, " at end", message);
 		} else {
@@ -91,9 +523,36 @@ public class Lox {
 	}
 
   static void runtimeError(RuntimeError error) {
-    System.err.println(error.getMessage() + "\n[line " + error.token.line + "]");
-	hadRuntimeError = true;
+    if (Metrics.ENABLED) Metrics.runtimeError();
+    Diagnostics captured = printError(error.getMessage() + "\n[line " + error.token.line + "]");
+	if (captured == null) {
+		hadRuntimeError = true;
+	} else {
+		captured.hadRuntimeError = true;
+	}
+  }
 
+  /*
+   * route diagnostics of the calling thread into the given buffer,
+   * or back to System.err when buffer is null.
+   */
+  static void captureDiagnostics(Diagnostics buffer) {
+    if (buffer == null) {
+		diagnostics.remove();
+	} else {
+		diagnostics.set(buffer);
+	}
+  }
+
+  // prints or captures `message`, returns where it was captured to
+  private static Diagnostics printError(String message) {
+    Diagnostics buffer = diagnostics.get();
+	if (buffer == null) {
+		System.err.println(message);
+	} else {
+		buffer.text.append(message).append('\n');
+	}
+	return buffer;
   }
 
 }
@@ -0,0 +1,128 @@
+package com.craftinginterpreters.lox;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/*
+ * Live counters and latencies of the whole process, read through JMX
+ * (see MetricsMXBean).
+ *
+ * Off unless the JVM is started with -Djlox.metrics=true. ENABLED is a
+ * constant, so with metrics off every `if (Metrics.ENABLED)` is compiled
+ * away and costs nothing, not even in the interpreter's inner loop. When
+ * on, counters are LongAdders and latencies LatencyHistograms, neither
+ * of which takes a lock.
+ */
+final class Metrics implements MetricsMXBean {
+  static final boolean ENABLED = Boolean.getBoolean("jlox.metrics");
+
+  private static final Metrics INSTANCE = ENABLED ? register(new Metrics()) : null;
+
+  private final LongAdder evaluations = new LongAdder();
+  private final LongAdder scanErrors = new LongAdder();
+  private final LongAdder parseErrors = new LongAdder();
+  private final LongAdder runtimeErrors = new LongAdder();
+  private final LongAdder[] operators = new LongAdder[TokenType.values().length];
+  private final LatencyHistogram scanLatency = new LatencyHistogram();
+  private final LatencyHistogram parseLatency = new LatencyHistogram();
+  private final LatencyHistogram evaluateLatency = new LatencyHistogram();
+
+  private Metrics() {
+    for (int i = 0; i < operators.length; i++) operators[i] = new LongAdder();
+  }
+
+  private static Metrics register(Metrics metrics) {
+    try {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+			new ObjectName("com.craftinginterpreters.lox:type=Metrics"));
+	} catch (JMException error) {
+		// still counting, only nobody can look. a second class loader, most likely
+	}
+	return metrics;
+  }
+
+  /*
+   * the recording side. only call these when ENABLED.
+   */
+  static void scanned(long nanos) {
+    INSTANCE.scanLatency.record(nanos);
+  }
+
+  static void parsed(long nanos) {
+    INSTANCE.parseLatency.record(nanos);
+  }
+
+  static void evaluated(long nanos) {
+    INSTANCE.evaluations.increment();
+	INSTANCE.evaluateLatency.record(nanos);
+  }
+
+  static void operator(TokenType type) {
+    INSTANCE.operators[type.ordinal()].increment();
+  }
+
+  static void scanError() {
+    INSTANCE.scanErrors.increment();
+  }
+
+  static void parseError() {
+    INSTANCE.parseErrors.increment();
+  }
+
+  static void runtimeError() {
+    INSTANCE.runtimeErrors.increment();
+  }
+
+  @Override
+  public long getEvaluations() {
+    return evaluations.sum();
+  }
+
+  @Override
+  public Map<String, Long> getErrors() {
+    Map<String, Long> errors = new LinkedHashMap<>();
+	errors.put("scan", scanErrors.sum());
+	errors.put("parse", parseErrors.sum());
+	errors.put("runtime", runtimeErrors.sum());
+	return errors;
+  }
+
+  @Override
+  public Map<String, Long> getOperators() {
+    Map<String, Long> counts = new LinkedHashMap<>();
+	for (TokenType type : TokenType.values()) {
+		long count = operators[type.ordinal()].sum();
+		if (count > 0) counts.put(type.name(), count);
+	}
+	return counts;
+  }
+
+  @Override
+  public Map<String, Long> getScanLatency() {
+    return summary(scanLatency);
+  }
+
+  @Override
+  public Map<String, Long> getParseLatency() {
+    return summary(parseLatency);
+  }
+
+  @Override
+  public Map<String, Long> getEvaluateLatency() {
+    return summary(evaluateLatency);
+  }
+
+  private static Map<String, Long> summary(LatencyHistogram histogram) {
+    Map<String, Long> summary = new LinkedHashMap<>();
+	summary.put("count", histogram.count());
+	summary.put("p50", histogram.percentile(0.5));
+	summary.put("p90", histogram.percentile(0.9));
+	summary.put("p99", histogram.percentile(0.99));
+	summary.put("p999", histogram.percentile(0.999));
+	return summary;
+  }
+}
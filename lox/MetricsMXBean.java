@@ -0,0 +1,23 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Map;
+
+/*
+ * What Metrics shows over JMX, as com.craftinginterpreters.lox:type=Metrics.
+ * latencies are maps of count, p50, p90, p99 and p999, in nanoseconds.
+ */
+public interface MetricsMXBean {
+  long getEvaluations();
+
+  // scan, parse and runtime errors reported so far
+  Map<String, Long> getErrors();
+
+  // how often every operator was evaluated, by token type
+  Map<String, Long> getOperators();
+
+  Map<String, Long> getScanLatency();
+
+  Map<String, Long> getParseLatency();
+
+  Map<String, Long> getEvaluateLatency();
+}
@@ -0,0 +1,225 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+ * Where the interpreter prints its results.
+ *
+ * Values are encoded straight into one reusable byte buffer, without going
+ * through stringify and a String per result, and the buffer is handed to
+ * the target according to a flush policy. The buffer is only allocated at
+ * the first print and grows up to 64 KiB as the policy lets it fill up:
+ *   LINE   after every result, like System.out.println (the default)
+ *   BYTES  once `threshold` bytes are buffered
+ *   END    only when flush() is called (or the buffer is full)
+ *
+ * Targets: System.out (whatever it is at the time of the flush), any
+ * OutputStream, a channel (FileChannel for files), or memory.
+ */
+abstract class OutputSink {
+  enum Flush { LINE, BYTES, END }
+
+  private static final int BUFFER_SIZE = 1 << 16; // what the buffer can grow to
+  private static final int FIRST_BUFFER_SIZE = 256;
+  private static final byte[] NO_BUFFER = new byte[0];
+
+  private byte[] buffer = NO_BUFFER; // grown on demand, most interpreters never print
+  private int count = 0;
+  private final Flush policy;
+  private final int threshold;
+  private final Charset charset;
+  private final boolean asciiCompatible;
+
+  OutputSink(Flush policy, int threshold, Charset charset) {
+    this.policy = policy;
+	this.threshold = Math.max(1, Math.min(threshold, BUFFER_SIZE));
+	this.charset = charset;
+	this.asciiCompatible = charset.equals(StandardCharsets.UTF_8) ||
+		charset.equals(StandardCharsets.US_ASCII) ||
+		charset.equals(StandardCharsets.ISO_8859_1);
+  }
+
+  static OutputSink toStdout(Flush policy) {
+    return new OutputSink(policy, BUFFER_SIZE, Charset.defaultCharset()) {
+		@Override
+		void drain(byte[] bytes, int length) {
+			System.out.write(bytes, 0, length);
+			System.out.flush();
+		}
+	};
+  }
+
+  static OutputSink to(OutputStream out, Flush policy, int threshold) {
+    return new OutputSink(policy, threshold, Charset.defaultCharset()) {
+		@Override
+		void drain(byte[] bytes, int length) throws IOException {
+			out.write(bytes, 0, length);
+			out.flush();
+		}
+	};
+  }
+
+  static OutputSink to(WritableByteChannel channel, Flush policy, int threshold) {
+    return new OutputSink(policy, threshold, Charset.defaultCharset()) {
+		@Override
+		void drain(byte[] bytes, int length) throws IOException {
+			ByteBuffer pending = ByteBuffer.wrap(bytes, 0, length);
+			while (pending.hasRemaining()) channel.write(pending);
+		}
+	};
+  }
+
+  /*
+   * keeps everything it is given, for tests and for embedding jlox.
+   */
+  static class InMemory extends OutputSink {
+    private byte[] bytes = new byte[256];
+	private int length = 0;
+
+	InMemory() {
+		this(Flush.END, BUFFER_SIZE);
+	}
+
+	InMemory(Flush policy, int threshold) {
+		super(policy, threshold, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	void drain(byte[] chunk, int chunkLength) {
+		if (length + chunkLength > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + chunkLength));
+		}
+		System.arraycopy(chunk, 0, bytes, length, chunkLength);
+		length += chunkLength;
+	}
+
+	@Override
+	public String toString() {
+		flush();
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+  }
+
+  // hand `length` bytes of the buffer over to the target
+  abstract void drain(byte[] bytes, int length) throws IOException;
+
+  /*
+   * print one result and a newline. same text as Interpreter.stringify.
+   */
+  void print(Object value) {
+    if (value == null) {
+		ascii("nil");
+	} else if (value instanceof Double) {
+		number((double)value);
+	} else if (value instanceof Boolean) {
+		ascii((boolean)value ? "true" : "false");
+	} else {
+		text(value.toString());
+	}
+	put((byte)'\n');
+
+	if (policy == Flush.LINE || (policy == Flush.BYTES && count >= threshold)) flush();
+  }
+
+  void flush() {
+    if (count == 0) return;
+	try {
+		drain(buffer, count);
+	} catch (IOException error) {
+		throw new UncheckedIOException(error);
+	}
+	count = 0;
+  }
+
+  /*
+   * integers below 10^7 are what Double.toString prints without exponent,
+   * so those are written digit by digit. everything else goes the slow way.
+   */
+  private void number(double value) {
+    long whole = (long)value;
+	if (whole == value && Math.abs(value) < 1e7) {
+		if (whole == 0 && Double.doubleToRawLongBits(value) < 0) {
+			ascii("-0");
+			return;
+		}
+		if (whole < 0) {
+			put((byte)'-');
+			whole = -whole;
+		}
+		room(7);
+		int digits = 1;
+		for (long rest = whole / 10; rest > 0; rest /= 10) digits++;
+		for (int i = count + digits - 1; i >= count; i--) {
+			buffer[i] = (byte)('0' + whole % 10);
+			whole /= 10;
+		}
+		count += digits;
+		return;
+	}
+
+	String text = Double.toString(value);
+	if (text.endsWith(".0")) text = text.substring(0, text.length() - 2);
+	ascii(text);
+  }
+
+  private void text(String text) {
+    if (asciiCompatible && text.length() <= BUFFER_SIZE) {
+		room(text.length());
+		int start = count;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c >= 0x80) { // not plain ascii after all
+				count = start;
+				bytes(text.getBytes(charset));
+				return;
+			}
+			buffer[count++] = (byte)c;
+		}
+		return;
+	}
+	bytes(text.getBytes(charset));
+  }
+
+  private void ascii(String text) {
+    room(text.length());
+	for (int i = 0; i < text.length(); i++) buffer[count++] = (byte)text.charAt(i);
+  }
+
+  private void bytes(byte[] bytes) {
+    if (bytes.length > BUFFER_SIZE) {
+		flush();
+		try {
+			drain(bytes, bytes.length);
+		} catch (IOException error) {
+			throw new UncheckedIOException(error);
+		}
+		return;
+	}
+	room(bytes.length);
+	System.arraycopy(bytes, 0, buffer, count, bytes.length);
+	count += bytes.length;
+  }
+
+  private void put(byte b) {
+    room(1);
+	buffer[count++] = b;
+  }
+
+  // make sure `length` more bytes fit in the buffer, growing it before flushing
+  private void room(int length) {
+    if (count + length <= buffer.length) return;
+	if (buffer.length < BUFFER_SIZE) {
+		int size = Math.max(FIRST_BUFFER_SIZE, buffer.length);
+		while (size < count + length && size < BUFFER_SIZE) size *= 2;
+		buffer = Arrays.copyOf(buffer, Math.min(size, BUFFER_SIZE));
+	}
+	if (count + length > buffer.length) flush();
+  }
+}
@@ -0,0 +1,104 @@
+package com.craftinginterpreters.lox;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/*
+ * Evaluates one big expression on several threads.
+ *
+ * Expressions have no side effects, so the two operands of a Binary can be
+ * evaluated at the same time. Wherever both of them are at least THRESHOLD
+ * nodes (Expr.size, counted when the tree was built) the right one becomes
+ * a fork/join task while the current thread goes on with the left one.
+ * Smaller subtrees, and the long `a + b + c ...` chains whose right operand
+ * is a single node, are evaluated the usual way: splitting them would cost
+ * more than it gains.
+ *
+ * Errors come out the same as from a sequential evaluation: the left
+ * operand's error wins over the right one's, whichever happens first in
+ * time, so the error reported is the first one in evaluation order.
+ */
+class ParallelEvaluator {
+  static final int THRESHOLD = 1 << 12;
+
+  private final ForkJoinPool pool;
+  private final Environment environment;
+  // one interpreter per worker thread, they hold no state of an evaluation
+  private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+
+  /*
+   * identifiers are read from `environment`, which must not change while
+   * an evaluation is running.
+   */
+  ParallelEvaluator(ForkJoinPool pool, Environment environment) {
+    this.pool = pool;
+	this.environment = environment;
+  }
+
+  Object evaluate(Expr expr) {
+    if (expr.size < 2 * THRESHOLD) return workers.get().measured(expr); // nothing to split
+
+	// one event for the whole tree, as Interpreter.measured does, not one per task
+	Events.Evaluate event = Events.evaluating();
+	long start = Metrics.ENABLED ? System.nanoTime() : 0;
+	boolean failed = true;
+	try {
+		Object value = pool.invoke(new Task(expr));
+		failed = false;
+		return value;
+	} finally {
+		Events.evaluated(event, start, expr, failed);
+	}
+  }
+
+  private class Task extends RecursiveTask<Object> {
+    private final Expr expr;
+
+	Task(Expr expr) {
+		this.expr = expr;
+	}
+
+	@Override
+	protected Object compute() {
+		return workers.get().evaluate(expr);
+	}
+  }
+
+  private class Worker extends Interpreter {
+    Worker() {
+		super(new OutputSink.InMemory()); // never prints
+	}
+
+	@Override
+	Object evaluate(Expr expr) {
+		if (expr instanceof Expr.Binary) {
+			Expr.Binary binary = (Expr.Binary)expr;
+			if (binary.left.size >= THRESHOLD && binary.right.size >= THRESHOLD) return split(binary);
+		}
+		return expr.accept(this);
+	}
+
+	private Object split(Expr.Binary binary) {
+		Task right = new Task(binary.right);
+		right.fork();
+
+		Object left;
+		try {
+			left = evaluate(binary.left);
+		} catch (RuntimeError error) {
+			right.cancel(false); // comes after the error, nobody needs it anymore
+			throw error;
+		}
+		Object rightValue = right.join(); // its RuntimeError, if any, comes through join
+
+		// the operator itself, on the values of its operands
+		return visitBinaryExpr(new Expr.Binary(new Expr.Literal(left), binary.operator,
+			new Expr.Literal(rightValue)));
+	}
+
+	@Override
+	public Object visitVariableExpr(Expr.Variable expr) {
+		return ParallelEvaluator.this.environment.get(expr.name); // not the one it inherits
+	}
+  }
+}
@@ -1,28 +1,127 @@
 package com.craftinginterpreters.lox;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static com.craftinginterpreters.lox.TokenType.*;
 
 class Parser {
-  private static class ParseError extends RuntimeException {}
+  /*
+   * only used to unwind back to parse(), the diagnostic is already printed
+   * by then. so no stack trace, and one shared instance is enough.
+   */
+  private static class ParseError extends RuntimeException {
+    ParseError() {
+		super(null, null, false, false);
+	}
+  }
+
+  private static final ParseError PARSE_ERROR = new ParseError();
 
   private final List<Token> tokens; // we have tokens (in list) now instead of chars
   private int current = 0; // point to the next token that is to be parsed
+  private boolean quiet = false; // don't report errors, see parseExactly
+  private final int maxDepth; // deepest tree allowed, 0 for any
+  private int nesting = 0; // unary operators and groupings we are inside of
 
   Parser(List<Token> tokens) {
+    this(tokens, 0);
+  }
+
+  /*
+   * a parser for untrusted input: an expression nesting deeper than
+   * `maxDepth` is a syntax error, before it can overflow the stack of the
+   * parser or of whatever evaluates the tree (see Budget).
+   */
+  Parser(List<Token> tokens, int maxDepth) {
     this.tokens = tokens;
+	this.maxDepth = maxDepth;
   }
 
   // main parse method to kick off the parser
   Expr parse() {
-    try {
+    nesting = 0;
+	try {
 		return expression();
 	} catch (ParseError error) {
 		return null; // when there is syntax error, returns null for now. Thats better than hanging
 	}
   }
 
+  /*
+   * RULE:
+   * program --> statement* EOF ;
+   * a statement with a syntax error is reported and skipped, so that the
+   * ones after it are checked too. only run the result when there was none.
+   */
+  List<Stmt> parseProgram() {
+    List<Stmt> statements = new ArrayList<>();
+	while (!isAtEnd()) {
+		Stmt statement = parseStatement();
+		if (statement != null) statements.add(statement);
+	}
+	return statements;
+  }
+
+  /*
+   * the next statement of a program, or null when it had a syntax error.
+   * call it until isAtEnd(), see parseProgram (and Pipeline, which hands
+   * statements on one by one instead of collecting them).
+   */
+  Stmt parseStatement() {
+    nesting = 0;
+	try {
+		return statement();
+	} catch (ParseError error) {
+		synchronize(); // skip to the next statement
+		return null;
+	}
+  }
+
+  /*
+   * parse the tokens as exactly one expression, used when only a piece of
+   * an edited source is reparsed (see Document). errors are not reported
+   * here: null just means "this piece does not stand on its own".
+   */
+  Expr parseExactly() {
+    quiet = true;
+	nesting = 0;
+	try {
+		Expr expr = expression();
+		return isAtEnd() ? expr : null;
+	} catch (ParseError error) {
+		return null;
+	}
+  }
+
+  /*
+   * RULE:
+   * statement --> exprStmt | printStmt ;
+   */
+  private Stmt statement() {
+    if (match(PRINT)) return printStatement();
+
+	return expressionStatement();
+  }
+
+  /*
+   * printStmt --> "print" expression ";" ;
+   */
+  private Stmt printStatement() {
+    Expr value = expression();
+	consume(SEMICOLON, "Expect ';' after value.");
+	return new Stmt.Print(value);
+  }
+
+  /*
+   * exprStmt --> expression ";" ;
+   */
+  private Stmt expressionStatement() {
+    Expr expr = expression();
+	consume(SEMICOLON, "Expect ';' after expression.");
+	return new Stmt.Expression(expr);
+  }
+
   /*
    * First and foremost rule that is simplest.
    * Expression expands to equality
@@ -45,7 +144,7 @@ class Parser {
 	while (match(BANG_EQUAL, EQUAL_EQUAL)) {
 		Token operator = previous();
 		Expr right = comparison();
-		expr = new Expr.Binary(expr, operator, right);
+		expr = limited(new Expr.Binary(expr, operator, right), operator);
 	}
 
 	return expr;
@@ -63,7 +162,7 @@ class Parser {
 	while (match(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)){
 		Token operator = previous();
 		Expr right = term();
-		expr = new Expr.Binary(expr, operator, right);
+		expr = limited(new Expr.Binary(expr, operator, right), operator);
 	}
 	return expr;
   }
@@ -77,7 +176,7 @@ class Parser {
 	while (match(MINUS, PLUS)){
 		Token operator = previous();
 		Expr right = factor();
-		expr = new Expr.Binary(expr, operator, right);
+		expr = limited(new Expr.Binary(expr, operator, right), operator);
 	}
 	return expr;
   }
@@ -91,7 +190,7 @@ class Parser {
 	while (match(SLASH, STAR)){
 		Token operator = previous();
 		Expr right = unary();
-		expr = new Expr.Binary(expr, operator, right);
+		expr = limited(new Expr.Binary(expr, operator, right), operator);
 	}
 	return expr;
   }
@@ -108,8 +207,10 @@ class Parser {
   private Expr unary() {
 	while (match(BANG, MINUS)){
 		Token operator = previous();
+		enter(operator);
 		Expr right = unary();
-		return new Expr.Unary(operator, right);
+		nesting--;
+		return limited(new Expr.Unary(operator, right), operator);
 	}
 
 	return primary();
@@ -118,7 +219,7 @@ class Parser {
   /*
    * RULE 6:
    * primary --> NUMBER | STRING | "true" | "false" | "nil"
-   * 		 | "(" expression ")" ;
+   * 		 | "(" expression ")" | IDENTIFIER ;
    * parsing single literals such as number, string, ture false, nil is straight forward
    */
   private Expr primary() {
@@ -130,10 +231,18 @@ class Parser {
 		return new Expr.Literal(previous().literal);
 	}
 
+	// identifiers stand for values the host program binds (see Environment)
+	if (match(IDENTIFIER)) {
+		return new Expr.Variable(previous());
+	}
+
 	if (match(LEFT_PAREN)) {
+		Token paren = previous();
+		enter(paren);
 		Expr expr = expression();
 		consume(RIGHT_PAREN, "Expect ')' after expression."); // must find right paren. Error otherwise
-		return new Expr.Grouping(expr);
+		nesting--;
+		return limited(new Expr.Grouping(expr), paren);
 	}
 
 	// we are at a token that does not start an expression.
@@ -189,7 +298,7 @@ class Parser {
 	 * HELPERFN: isAtEnd()
 	 * end of the tokens? or still have some more?
 	 */
-    private boolean isAtEnd() {
+    boolean isAtEnd() {
 		return peek().type == EOF;
 	}
 
@@ -197,10 +306,35 @@ class Parser {
 		return tokens.get(current);
 	}
 
+	/*
+	 * HELPERFN: next()
+	 * the token the next statement starts at, for Pipeline to place
+	 * scan errors before or after a statement.
+	 */
+	Token next() {
+		return peek();
+	}
+
 	private Token previous() {
 		return tokens.get(current - 1);
 	}
 
+	/*
+	 * HELPER fns: enter and limited
+	 * with a maxDepth, going one level further in than allowed is an
+	 * error before we recurse, and so is a node deeper than allowed
+	 * (a long chain of binary operators is built in a loop, not by
+	 * recursion, but evaluating it recurses all the same).
+	 */
+	private void enter(Token token) {
+		if (++nesting > maxDepth && maxDepth > 0) throw error(token, "Expression nested too deeply.");
+	}
+
+	private Expr limited(Expr expr, Token token) {
+		if (expr.depth > maxDepth && maxDepth > 0) throw error(token, "Expression nested too deeply.");
+		return expr;
+	}
+
 	/*
 	 * HELPER fn: error
 	 * error method that returns a sentinel class ParseError
@@ -210,8 +344,8 @@ class Parser {
 	 * so that we can decide to unwind or not.
 	 */
     private ParseError error(Token token, String message){
-		Lox.error(token, message);
-		return new ParseError();
+		if (!quiet) Lox.error(token, message);
+		return PARSE_ERROR;
 	}
 
 
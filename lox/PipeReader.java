@@ -0,0 +1,131 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/*
+ * Reader half of pipe mode (see Lox.runPipe).
+ *
+ * Runs on its own thread: reads stdin in big blocks, splits it into lines
+ * and hands them over in batches through a bounded queue. When the
+ * evaluating thread falls behind the queue fills up and the reader blocks,
+ * which in turn stops draining the pipe and pushes back on the producer.
+ *
+ * Every read ends the current batch, so a slow producer (or a person
+ * typing) still gets each line evaluated as soon as it arrives.
+ */
+class PipeReader implements Runnable {
+  private static final int READ_SIZE = 1 << 20;
+  private static final int BATCH_LINES = 1024;
+  private static final int QUEUED_BATCHES = 16;
+
+  // an empty batch marks the end of input
+  private static final List<String> END = Collections.emptyList();
+
+  private final InputStream in;
+  private final CharsetDecoder decoder;
+  private final BlockingQueue<List<String>> batches = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+  private volatile IOException failure;
+
+  PipeReader(InputStream in, Charset charset) {
+    this.in = in;
+	this.decoder = charset.newDecoder()
+		.onMalformedInput(CodingErrorAction.REPLACE)
+		.onUnmappableCharacter(CodingErrorAction.REPLACE);
+  }
+
+  /*
+   * next batch of lines, or null once the input is over.
+   */
+  List<String> next() throws IOException, InterruptedException {
+    List<String> batch = batches.take();
+	if (batch != END) return batch;
+
+	batches.put(END); // stay at the end for any later call
+	if (failure != null) throw failure;
+	return null;
+  }
+
+  // true when the reader has nothing queued up, a good moment to flush
+  boolean isIdle() {
+    return batches.isEmpty();
+  }
+
+  @Override
+  public void run() {
+    try {
+		read();
+	} catch (IOException error) {
+		failure = error;
+	} catch (InterruptedException error) {
+		return; // the evaluating side gave up, nobody is listening
+	}
+
+	try {
+		batches.put(END);
+	} catch (InterruptedException error) {
+		// same as above
+	}
+  }
+
+  private void read() throws IOException, InterruptedException {
+    byte[] block = new byte[READ_SIZE];
+	ByteBuffer bytes = ByteBuffer.wrap(block);
+	CharBuffer chars = CharBuffer.allocate(READ_SIZE);
+	StringBuilder partial = new StringBuilder(); // line cut off by the end of a block
+	List<String> batch = new ArrayList<>(BATCH_LINES);
+
+	for (;;) {
+		int count = in.read(block, bytes.position(), bytes.remaining());
+		boolean atEnd = count < 0;
+		if (!atEnd) bytes.position(bytes.position() + count);
+
+		bytes.flip();
+		decoder.decode(bytes, chars, atEnd);
+		if (atEnd) decoder.flush(chars);
+		bytes.compact(); // keep a multi byte char split across blocks
+
+		char[] text = chars.array();
+		int length = chars.position();
+		int lineStart = 0;
+		for (int i = 0; i < length; i++) {
+			if (text[i] != '\n') continue;
+
+			partial.append(text, lineStart, i - lineStart);
+			int last = partial.length() - 1;
+			if (last >= 0 && partial.charAt(last) == '\r') partial.setLength(last);
+			lineStart = i + 1;
+
+			batch.add(partial.toString());
+			partial.setLength(0);
+			if (batch.size() == BATCH_LINES) {
+				batches.put(batch);
+				batch = new ArrayList<>(BATCH_LINES);
+			}
+		}
+		partial.append(text, lineStart, length - lineStart);
+		chars.clear();
+
+		if (atEnd) {
+			// last line without a newline, like BufferedReader.readLine
+			if (partial.length() > 0) batch.add(partial.toString());
+			if (!batch.isEmpty()) batches.put(batch);
+			return;
+		}
+		if (!batch.isEmpty()) {
+			batches.put(batch);
+			batch = new ArrayList<>(BATCH_LINES);
+		}
+	}
+  }
+}
@@ -0,0 +1,304 @@
+package com.craftinginterpreters.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/*
+ * Runs a whole program with scanning, parsing and execution as three
+ * stages on their own threads, connected by bounded queues:
+ *
+ *   scanner  --tokens-->  parser  --statements-->  interpreter
+ *
+ * so the first statements run while the end of the source is still being
+ * scanned. Tokens and statements travel in chunks to keep the handover
+ * cheap, and a full queue stops the stage in front of it. The parser
+ * hands a chunk over early when the interpreter has nothing to do.
+ *
+ * What comes out is the same as from scanning, parsing and then running
+ * the program one phase after another:
+ *
+ *   a syntax error anywhere means nothing runs. Statements are executed
+ *   before the parser knows, so their output is held back in memory until
+ *   the whole program has parsed, and dropped if it did not.
+ *
+ *   scan errors are printed before parse errors, each in source order.
+ *   every stage collects its own (see Lox.captureDiagnostics) and they are
+ *   printed once all stages are done.
+ *
+ *   the first runtime error stops execution and is printed after the
+ *   output of the statements before it.
+ *
+ * With `stream` (--stream-output) output is not held back but flushed
+ * whenever the interpreter catches up, so it shows before the end of the
+ * parse. That is not what running the phases one after another does: the
+ * statements before the first syntax error run and their output stays,
+ * and a runtime error among them is printed before the syntax errors.
+ *
+ * Each of the scanner and the parser stage is one jlox.Scan or jlox.Parse
+ * event, waits for the next stage included.
+ */
+class Pipeline {
+  private static final int TOKEN_CHUNK = 4096;
+  private static final int STATEMENT_CHUNK = 256;
+  private static final int QUEUED_CHUNKS = 16;
+
+  // an empty chunk marks the end of a stage's output
+  private static final List<Token> NO_TOKENS = Collections.emptyList();
+  private static final List<Stmt> NO_STATEMENTS = Collections.emptyList();
+
+  // how far the parser got, as far as the interpreter is concerned
+  private static final int PARSING = 0;
+  private static final int PARSED = 1;
+  private static final int FAILED = 2;
+
+  private final BlockingQueue<List<Token>> tokens = new ArrayBlockingQueue<>(QUEUED_CHUNKS);
+  private final BlockingQueue<List<Stmt>> statements = new ArrayBlockingQueue<>(QUEUED_CHUNKS);
+  private final Lox.Diagnostics scanErrors = new Lox.Diagnostics();
+  private final Lox.Diagnostics parseErrors = new Lox.Diagnostics();
+  private volatile int parsing = PARSING;
+  private volatile int scanErrorAt = Integer.MAX_VALUE; // offset of the token after the first scan error
+  private volatile Throwable crash; // a stage died of something that is not a lox error
+
+  private final PrintStream out;
+  private final boolean stream;
+  private final Gate gate;
+  private final Interpreter interpreter;
+
+  Pipeline(PrintStream out, boolean stream) {
+    this.out = out;
+	this.stream = stream;
+	this.gate = new Gate(out, stream);
+	this.interpreter = new Interpreter(gate);
+  }
+
+  /*
+   * output that stays in memory until open() is called, unless it is
+   * open from the start.
+   */
+  private static class Gate extends OutputSink {
+    private final OutputStream target;
+	private final ByteArrayOutputStream held = new ByteArrayOutputStream();
+	private boolean open;
+
+	Gate(OutputStream target, boolean open) {
+		super(Flush.BYTES, 1 << 16, Charset.defaultCharset());
+		this.target = target;
+		this.open = open;
+	}
+
+	@Override
+	void drain(byte[] bytes, int length) throws IOException {
+		if (open) {
+			target.write(bytes, 0, length);
+			target.flush();
+		} else {
+			held.write(bytes, 0, length);
+		}
+	}
+
+	void open() throws IOException {
+		if (open) return;
+		open = true;
+		held.writeTo(target);
+		held.reset();
+		target.flush();
+	}
+  }
+
+  void run(String source) throws InterruptedException, IOException {
+    Thread scanner = stage("jlox-scanner", scanErrors, () -> scan(source), () -> tokens.put(NO_TOKENS));
+	Thread parser = stage("jlox-parser", parseErrors, this::parse, () -> {
+		parsing = FAILED;
+		statements.put(NO_STATEMENTS);
+	});
+	scanner.start();
+	parser.start();
+
+	RuntimeError failure = null;
+	try {
+		failure = execute();
+	} finally {
+		// unblock the stages if we got here early, then wait for them
+		if (parser.isAlive()) parser.interrupt();
+		if (scanner.isAlive()) scanner.interrupt();
+		parser.join();
+		scanner.join();
+	}
+
+	if (crash instanceof RuntimeException) throw (RuntimeException)crash;
+	if (crash instanceof Error) throw (Error)crash;
+
+	gate.flush();
+	if (parsing != FAILED || stream) {
+		gate.open();
+		if (failure != null) Lox.runtimeError(failure);
+	}
+	if (parsing == FAILED) {
+		out.flush();
+		System.err.print(scanErrors);
+		System.err.print(parseErrors);
+		Lox.hadError = true; // the stages only captured theirs
+	}
+  }
+
+  // the calling thread is the interpreter stage
+  private RuntimeError execute() throws InterruptedException, IOException {
+    RuntimeError failure = null;
+	for (;;) {
+		List<Stmt> chunk = statements.take();
+		if (chunk == NO_STATEMENTS) return failure;
+
+		// after an error keep taking chunks, or the parser would block and never finish.
+		// the parser only hands over statements before a syntax error, but held output
+		// is dropped anyway once it found one
+		for (int i = 0; i < chunk.size() && failure == null && (stream || parsing != FAILED); i++) {
+			try {
+				interpreter.execute(chunk.get(i));
+			} catch (RuntimeError error) {
+				failure = error;
+			}
+		}
+		if (parsing == PARSED) gate.open(); // nothing can stop the output anymore
+		if (statements.isEmpty()) gate.flush(); // caught up, show what we have
+	}
+  }
+
+  /*
+   * a thread running `body`. if that dies, `end` tells the next stage
+   * there is nothing more to come.
+   */
+  private Thread stage(String name, Lox.Diagnostics errors, Stage body, Stage end) {
+    Thread thread = new Thread(() -> {
+		Lox.captureDiagnostics(errors);
+		try {
+			body.run();
+		} catch (RuntimeException | Error error) {
+			if (crash == null) crash = error;
+			try {
+				end.run();
+			} catch (InterruptedException interrupted) {
+				// same as below
+			}
+		} catch (InterruptedException error) {
+			// the interpreter stage is gone, nobody is waiting for us
+		} finally {
+			Lox.captureDiagnostics(null);
+		}
+	}, name);
+	thread.setDaemon(true);
+	return thread;
+  }
+
+  private interface Stage {
+    void run() throws InterruptedException;
+  }
+
+  private void scan(String source) throws InterruptedException {
+    Events.Scan event = Events.scanning();
+	long start = Metrics.ENABLED ? System.nanoTime() : 0;
+	Scanner scanner = new Scanner(source);
+	List<Token> chunk = new ArrayList<>(TOKEN_CHUNK);
+	int count = 0;
+	for (;;) {
+		Token token = scanner.nextToken();
+		if (scanErrorAt == Integer.MAX_VALUE && scanErrors.hadError) scanErrorAt = token.offset;
+		chunk.add(token);
+		count++;
+		if (token.type == TokenType.EOF) break;
+		if (chunk.size() == TOKEN_CHUNK) {
+			tokens.put(chunk);
+			chunk = new ArrayList<>(TOKEN_CHUNK);
+		}
+	}
+	tokens.put(chunk);
+	Events.scanned(event, start, source.length(), count);
+  }
+
+  private void parse() throws InterruptedException {
+    Events.Parse event = Events.parsing();
+	long start = Metrics.ENABLED ? System.nanoTime() : 0;
+	StreamedTokens streamed = new StreamedTokens();
+	Parser parser = new Parser(streamed);
+	List<Stmt> chunk = new ArrayList<>(STATEMENT_CHUNK);
+	int nodes = 0;
+	boolean failed = false;
+	while (!parser.isAtEnd()) {
+		Stmt statement = parser.parseStatement();
+		if (statement == null) {
+			failed = true;
+		} else {
+			nodes += Events.size(statement);
+		}
+		if (parsing == FAILED) continue; // nothing more runs, but keep going to report every error
+
+		// the scanner has got past the token after the statement, so a scan
+		// error before that would be known by now
+		if (statement == null || scanErrorAt < parser.next().offset) {
+			if (!chunk.isEmpty()) statements.put(chunk); // the ones before it
+			parsing = FAILED;
+			continue;
+		}
+
+		chunk.add(statement);
+		if (chunk.size() == STATEMENT_CHUNK || statements.isEmpty()) {
+			statements.put(chunk);
+			chunk = new ArrayList<>(STATEMENT_CHUNK);
+		}
+	}
+
+	// the scanner is done by now (we have seen EOF), so its errors are all in
+	if (parsing != FAILED) {
+		if (!chunk.isEmpty()) statements.put(chunk);
+		parsing = scanErrors.hadError ? FAILED : PARSED;
+	}
+	Events.parsed(event, start, streamed.size(), nodes, failed);
+	statements.put(NO_STATEMENTS);
+  }
+
+  /*
+   * the tokens as the scanner hands them over, for the parser. it only ever
+   * looks at the current token and the one before, so only the current
+   * chunk and the one before it are kept.
+   */
+  private class StreamedTokens extends AbstractList<Token> {
+    private List<Token> previous = NO_TOKENS;
+	private int previousStart = 0;
+	private List<Token> current = NO_TOKENS;
+	private int currentStart = 0;
+
+	@Override
+	public Token get(int index) {
+		while (index >= currentStart + current.size()) {
+			List<Token> next;
+			try {
+				next = tokens.take();
+			} catch (InterruptedException error) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for tokens.");
+			}
+			if (next == NO_TOKENS) throw new IllegalStateException("The scanner stopped.");
+
+			previous = current;
+			previousStart = currentStart;
+			currentStart += current.size();
+			current = next;
+		}
+		if (index >= currentStart) return current.get(index - currentStart);
+		return previous.get(index - previousStart);
+	}
+
+	@Override
+	public int size() {
+		return currentStart + current.size(); // what has arrived so far
+	}
+  }
+}
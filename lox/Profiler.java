@@ -0,0 +1,313 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+
+/*
+ * The interpreter behind --profile: which parts of the lox source the time
+ * and the allocated memory of an evaluation went to.
+ *
+ * Every operator and every statement is a frame. Around each evaluation of
+ * one the profiler reads the clock and the thread's allocation counter, and
+ * whatever its operands did not use is the frame's own ("self") share.
+ * Literals, variables and groupings are cheaper than the measuring would be,
+ * they count for the operator above them. As a lox tree has no calls, every
+ * node has exactly one path from the root, so frames are kept per node.
+ *
+ * Overhead: a frame costs a map lookup, two clock reads and two reads of
+ * the allocation counter, 100-250ns depending mostly on how fast the clock
+ * is. It is the same for every frame, so it can not grow beyond that times
+ * the number of frames evaluated: an arithmetic expression, the worst case,
+ * runs 5-9 times slower. The cost is measured when the profiler starts and
+ * taken out of the self times again (the report says how much), which gets
+ * most but not all of it. Memory is one Frame per node evaluated, and the
+ * collapsed stacks are at most MAX_DEPTH frames deep.
+ */
+class Profiler extends Interpreter {
+  static final int MAX_DEPTH = 256; // deeper frames are folded into the one at this depth, in stacks
+
+  private static final int CALIBRATION_ROUNDS = 5;
+  private static final int CALIBRATION_PROBES = 100_000;
+
+  private final String source;
+  private final com.sun.management.ThreadMXBean threads;
+  private final boolean allocations; // whether this JVM counts allocated bytes per thread
+  private final Map<Object, Frame> frames = new IdentityHashMap<>();
+  private final Frame root;
+  private Frame current;
+  private int statements = 0;
+  final long probeNanos; // what measuring one frame costs its caller
+
+  static class Frame {
+    final String label; // "+ 3:14", "print 3:1", the script name for the root
+	final int line; // 0 for the root
+	final Frame parent;
+	final int depth;
+	long calls;
+	long nanos; // everything, operands included
+	long bytes;
+	long childCalls;
+	long childNanos;
+	long childBytes;
+
+	Frame(String label, int line, Frame parent) {
+		this.label = label;
+		this.line = line;
+		this.parent = parent;
+		this.depth = parent == null ? 0 : parent.depth + 1;
+	}
+
+	void exit(long nanos, long bytes) {
+		this.calls++;
+		this.nanos += nanos;
+		this.bytes += bytes;
+		if (parent != null) {
+			parent.childCalls++;
+			parent.childNanos += nanos;
+			parent.childBytes += bytes;
+		}
+	}
+  }
+
+  Profiler(String source, String name, OutputSink output) {
+    super(output);
+	this.source = source;
+	this.threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+	this.allocations = threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled();
+	this.root = new Frame(name.replace(';', '_'), 0, null);
+	this.current = root;
+	this.probeNanos = calibrate();
+  }
+
+  /*
+   * profile one evaluation of an expression, or one run of a program.
+   * runtime errors are thrown on as from Interpreter.evaluate.
+   */
+  Object profile(Expr expr) {
+    long bytes = allocated();
+	long start = System.nanoTime();
+	try {
+		return measured(expr);
+	} finally {
+		root.exit(System.nanoTime() - start, allocated() - bytes);
+	}
+  }
+
+  void profile(List<Stmt> program) {
+    long bytes = allocated();
+	long start = System.nanoTime();
+	try {
+		for (Stmt statement : program) execute(statement);
+	} finally {
+		root.exit(System.nanoTime() - start, allocated() - bytes);
+	}
+  }
+
+  @Override
+  Object evaluate(Expr expr) {
+    if (!(expr instanceof Expr.Binary) && !(expr instanceof Expr.Unary)) return super.evaluate(expr);
+
+	Frame frame = frame(expr);
+	Frame caller = current;
+	current = frame;
+	long bytes = allocated();
+	long start = System.nanoTime();
+	try {
+		return super.evaluate(expr);
+	} finally {
+		frame.exit(System.nanoTime() - start, allocated() - bytes);
+		current = caller;
+	}
+  }
+
+  @Override
+  void execute(Stmt stmt) {
+    Frame frame = frame(stmt);
+	Frame caller = current;
+	current = frame;
+	long bytes = allocated();
+	long start = System.nanoTime();
+	try {
+		super.execute(stmt);
+	} finally {
+		frame.exit(System.nanoTime() - start, allocated() - bytes);
+		current = caller;
+	}
+  }
+
+  private long allocated() {
+    return allocations ? threads.getCurrentThreadAllocatedBytes() : 0;
+  }
+
+  private Frame frame(Object node) {
+    Frame frame = frames.get(node);
+	if (frame == null) {
+		frame = label(node, current);
+		frames.put(node, frame);
+	}
+	return frame;
+  }
+
+  private Frame label(Object node, Frame parent) {
+    if (node instanceof Stmt) {
+		statements++;
+		String kind = node instanceof Stmt.Print ? "print" : "statement";
+		Token first = firstToken(node instanceof Stmt.Print
+			? ((Stmt.Print)node).expression : ((Stmt.Expression)node).expression);
+		if (first == null) return new Frame(kind + " #" + statements, 0, parent); // only literals
+		return new Frame(kind + " " + location(first), first.line, parent);
+	}
+	Token operator = node instanceof Expr.Binary ? ((Expr.Binary)node).operator : ((Expr.Unary)node).operator;
+	return new Frame(operator.lexeme + " " + location(operator), operator.line, parent);
+  }
+
+  // the leftmost token that made it into the tree (literals keep none)
+  private static Token firstToken(Expr expr) {
+    if (expr instanceof Expr.Binary) {
+		Token left = firstToken(((Expr.Binary)expr).left);
+		return left != null ? left : ((Expr.Binary)expr).operator;
+	}
+	if (expr instanceof Expr.Unary) return ((Expr.Unary)expr).operator;
+	if (expr instanceof Expr.Grouping) return firstToken(((Expr.Grouping)expr).expression);
+	if (expr instanceof Expr.Variable) return ((Expr.Variable)expr).name;
+	return null;
+  }
+
+  // line:column, both from 1
+  private String location(Token token) {
+    int lineStart = source.lastIndexOf('\n', token.offset - 1) + 1;
+	return token.line + ":" + (token.offset - lineStart + 1);
+  }
+
+  /*
+   * what one frame costs the frame around it: the best of a few rounds of
+   * frames around nothing at all.
+   */
+  private long calibrate() {
+    Frame parent = new Frame("calibration", 0, null);
+	Frame frame = new Frame("probe", 0, parent);
+	long best = Long.MAX_VALUE;
+	for (int round = 0; round < CALIBRATION_ROUNDS; round++) {
+		long start = System.nanoTime();
+		for (int i = 0; i < CALIBRATION_PROBES; i++) {
+			Frame found = frames.get(frame); // a miss, about as fast as a hit
+			long bytes = allocated();
+			long begin = System.nanoTime();
+			frame.exit(System.nanoTime() - begin, allocated() - bytes);
+			if (found != null) current = found; // never, but keeps the lookup from being dropped
+		}
+		best = Math.min(best, (System.nanoTime() - start) / CALIBRATION_PROBES);
+	}
+	return best;
+  }
+
+  private long selfNanos(Frame frame) {
+    return Math.max(0, frame.nanos - frame.childNanos - frame.childCalls * probeNanos);
+  }
+
+  private static long selfBytes(Frame frame) {
+    return Math.max(0, frame.bytes - frame.childBytes);
+  }
+
+  /*
+   * the flat report: self time and allocations per source line, then the
+   * most expensive operators and statements.
+   */
+  void report(PrintStream out, int top) {
+    Collection<Frame> all = frames.values();
+	long probes = 0;
+	long total = selfNanos(root);
+	for (Frame frame : all) {
+		probes += frame.calls;
+		total += selfNanos(frame);
+	}
+
+	out.printf("profile of %s: %d run(s), %.3f ms, %d frames evaluated%n", root.label, root.calls,
+		root.nanos / 1e6, probes);
+	out.printf("measuring costs about %d ns a frame, %.3f ms of it is left out%n", probeNanos,
+		probes * probeNanos / 1e6);
+	if (!allocations) out.println("this JVM does not count allocations per thread, they are all 0");
+
+	// lines that only ever had literals on them have no frames, and show up as nothing
+	Map<Integer, long[]> lines = new TreeMap<>();
+	for (Frame frame : all) {
+		long[] line = lines.computeIfAbsent(frame.line, key -> new long[3]);
+		line[0] += selfNanos(frame);
+		line[1] += selfBytes(frame);
+		line[2] += frame.calls;
+	}
+
+	out.println();
+	out.println("    line     self ms  self %    alloc kb       calls");
+	for (Map.Entry<Integer, long[]> line : lines.entrySet()) {
+		long[] stats = line.getValue();
+		out.printf("%8s  %10.3f  %5.1f%%  %10.1f  %10d%n", line.getKey() == 0 ? "?" : line.getKey(),
+			stats[0] / 1e6, percent(stats[0], total), stats[1] / 1024.0, stats[2]);
+	}
+
+	List<Frame> hottest = new ArrayList<>(all);
+	hottest.sort((a, b) -> Long.compare(selfNanos(b), selfNanos(a)));
+	out.println();
+	out.println("     self ms  self %    alloc kb       calls  where");
+	for (Frame frame : hottest.subList(0, Math.min(top, hottest.size()))) {
+		out.printf("  %10.3f  %5.1f%%  %10.1f  %10d  %s%n", selfNanos(frame) / 1e6,
+			percent(selfNanos(frame), total), selfBytes(frame) / 1024.0, frame.calls, frame.label);
+	}
+	out.flush();
+  }
+
+  private static double percent(long part, long whole) {
+    return whole == 0 ? 0 : 100.0 * part / whole;
+  }
+
+  /*
+   * collapsed stacks as flamegraph.pl and speedscope read them, one line
+   * per frame: the labels from the root down, separated by ';', then the
+   * frame's self time in nanoseconds (or with bytes, its self allocations).
+   */
+  void writeStacks(Writer out, boolean bytes) throws IOException {
+    ToLongFunction<Frame> self = bytes ? Profiler::selfBytes : this::selfNanos;
+
+	// everything below MAX_DEPTH goes to its ancestor at MAX_DEPTH. that is
+	// looked up once per frame: a walk stops at the first frame it knows
+	Map<Frame, Long> values = new LinkedHashMap<>();
+	values.put(root, self.applyAsLong(root));
+	Map<Frame, Frame> folded = new IdentityHashMap<>();
+	List<Frame> walked = new ArrayList<>();
+	for (Frame frame : frames.values()) {
+		Frame shown = frame;
+		walked.clear();
+		while (shown.depth > MAX_DEPTH && !folded.containsKey(shown)) {
+			walked.add(shown);
+			shown = shown.parent;
+		}
+		if (shown.depth > MAX_DEPTH) shown = folded.get(shown);
+		for (Frame below : walked) folded.put(below, shown);
+		values.merge(shown, self.applyAsLong(frame), Long::sum);
+	}
+
+	List<String> path = new ArrayList<>();
+	for (Map.Entry<Frame, Long> entry : values.entrySet()) {
+		if (entry.getValue() == 0) continue;
+		path.clear();
+		for (Frame frame = entry.getKey(); frame != null; frame = frame.parent) path.add(frame.label);
+		for (int i = path.size() - 1; i >= 0; i--) {
+			out.write(path.get(i));
+			out.write(i > 0 ? ';' : ' ');
+		}
+		out.write(Long.toString(entry.getValue()));
+		out.write('\n');
+	}
+	out.flush();
+  }
+}
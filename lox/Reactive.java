@@ -0,0 +1,236 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/*
+ * Formulas over inputs, kept up to date as the inputs change.
+ *
+ * The host binds inputs (setInput) and defines named formulas, plain
+ * expressions whose identifiers read inputs or formulas defined before
+ * them. update() brings every formula value up to date.
+ *
+ * Instead of evaluating every formula again, every node of every tree
+ * keeps its last value. Changing an input marks the variables that read it
+ * dirty, and all of their ancestors up to the root of their formula, and
+ * only dirty nodes are evaluated again; everything else answers with the
+ * value it kept. A formula whose value really changed does the same to the
+ * variables that read it.
+ *
+ * Formulas may only read formulas defined before them, so definition order
+ * is a topological order: update() goes through the dirty formulas by
+ * index, and a formula only ever dirties formulas after itself.
+ *
+ * A formula that fails keeps the error instead of a value, and so does
+ * every formula that reads it.
+ */
+class Reactive {
+  private final Map<String, Object> inputs = new HashMap<>();
+  private final Map<String, Formula> formulas = new HashMap<>();
+  private final List<Formula> order = new ArrayList<>();
+  // variables reading each name, inputs and formulas alike
+  private final Map<String, List<Expr.Variable>> readers = new HashMap<>();
+  // parent of every node, formula of every variable
+  private final Map<Expr, Expr> parents = new IdentityHashMap<>();
+  private final Map<Expr, Formula> owners = new IdentityHashMap<>();
+
+  private final Map<Expr, Object> values = new IdentityHashMap<>();
+  private final Set<Expr> dirty = Collections.newSetFromMap(new IdentityHashMap<>());
+  private final BitSet pending = new BitSet(); // indexes of formulas to update
+  private final Evaluator evaluator = new Evaluator();
+
+  // what the last update() had to redo
+  int reevaluatedNodes = 0;
+  int reevaluatedFormulas = 0;
+
+  private static class Formula {
+    final String name;
+	final int index; // in definition order
+	final Expr tree;
+	Object value;
+	RuntimeError error;
+
+	Formula(String name, int index, Expr tree) {
+		this.name = name;
+		this.index = index;
+		this.tree = tree;
+	}
+  }
+
+  void setInput(String name, Object value) {
+    if (formulas.containsKey(name)) {
+		throw new IllegalArgumentException("'" + name + "' is a formula.");
+	}
+
+	boolean known = inputs.containsKey(name);
+	Object old = inputs.put(name, value);
+	if (known && same(old, value)) return;
+	invalidate(name);
+  }
+
+  /*
+   * add a formula, to be evaluated on the next update().
+   */
+  void define(String name, Expr tree) {
+    if (formulas.containsKey(name) || inputs.containsKey(name)) {
+		throw new IllegalArgumentException("'" + name + "' is already defined.");
+	}
+	if (readers.containsKey(name)) {
+		// would make an earlier formula depend on a later one
+		throw new IllegalArgumentException("'" + name + "' is read before it is defined.");
+	}
+
+	// check all of it before anything is recorded, a rejected tree leaves no trace
+	List<Expr> nodes = new ArrayList<>();
+	ArrayDeque<Expr> stack = new ArrayDeque<>();
+	stack.push(tree);
+	while (!stack.isEmpty()) {
+		Expr node = stack.pop();
+		if (node instanceof Expr.Variable && ((Expr.Variable)node).name.lexeme.equals(name)) {
+			throw new IllegalArgumentException("'" + name + "' reads itself.");
+		}
+		nodes.add(node);
+		for (Expr child : children(node)) stack.push(child);
+	}
+
+	Formula formula = new Formula(name, order.size(), tree);
+	formulas.put(name, formula);
+	order.add(formula);
+	for (Expr node : nodes) {
+		for (Expr child : children(node)) parents.put(child, node);
+		dirty.add(node);
+		if (node instanceof Expr.Variable) {
+			String read = ((Expr.Variable)node).name.lexeme;
+			owners.put(node, formula);
+			readers.computeIfAbsent(read, key -> new ArrayList<>()).add((Expr.Variable)node);
+		}
+	}
+	pending.set(formula.index);
+  }
+
+  /*
+   * evaluate whatever the changes since the last update made dirty.
+   */
+  void update() {
+    reevaluatedNodes = 0;
+	reevaluatedFormulas = 0;
+
+	for (int i = pending.nextSetBit(0); i >= 0; i = pending.nextSetBit(i + 1)) {
+		pending.clear(i);
+		Formula formula = order.get(i);
+		if (!dirty.contains(formula.tree)) continue;
+		reevaluatedFormulas++;
+
+		Object oldValue = formula.value;
+		RuntimeError oldError = formula.error;
+		try {
+			formula.value = evaluator.measured(formula.tree);
+			formula.error = null;
+		} catch (RuntimeError error) {
+			// the nodes from the root down to the error stay dirty. the formula
+			// is tried again once something it reads changes, not before
+			formula.value = null;
+			formula.error = error;
+		}
+
+		if (!sameError(formula.error, oldError) || !same(formula.value, oldValue)) {
+			invalidate(formula.name); // only ever formulas after this one
+		}
+	}
+  }
+
+  Object value(String name) {
+    return formula(name).value;
+  }
+
+  // the error of a formula that failed, null when it has a value
+  RuntimeError error(String name) {
+    return formula(name).error;
+  }
+
+  private Formula formula(String name) {
+    Formula formula = formulas.get(name);
+	if (formula == null) throw new IllegalArgumentException("No formula '" + name + "'.");
+	return formula;
+  }
+
+  /*
+   * mark everything that reads `name` dirty, up to the roots. ancestors of
+   * a dirty node are always dirty already, so the walk stops at the first.
+   */
+  private void invalidate(String name) {
+    List<Expr.Variable> variables = readers.get(name);
+	if (variables == null) return;
+
+	for (Expr.Variable variable : variables) {
+		Expr node = variable;
+		while (node != null && dirty.add(node)) node = parents.get(node);
+		pending.set(owners.get(variable).index);
+	}
+  }
+
+  private static List<Expr> children(Expr node) {
+    List<Expr> children = new ArrayList<>(2);
+	if (node instanceof Expr.Binary) {
+		children.add(((Expr.Binary)node).left);
+		children.add(((Expr.Binary)node).right);
+	} else if (node instanceof Expr.Unary) {
+		children.add(((Expr.Unary)node).right);
+	} else if (node instanceof Expr.Grouping) {
+		children.add(((Expr.Grouping)node).expression);
+	}
+	return children;
+  }
+
+  // same value as far as lox can tell, so nothing that reads it changes
+  private static boolean same(Object a, Object b) {
+    return Objects.equals(Rope.flatten(a), Rope.flatten(b));
+  }
+
+  // every evaluation throws a new error, the same one says the same at the same token
+  private static boolean sameError(RuntimeError a, RuntimeError b) {
+    if (a == null || b == null) return a == b;
+	return a.token == b.token && Objects.equals(a.getMessage(), b.getMessage());
+  }
+
+  /*
+   * the interpreter, except that clean nodes answer with the value they
+   * kept and variables read inputs and formulas.
+   */
+  private class Evaluator extends Interpreter {
+    Evaluator() {
+		super(new OutputSink.InMemory()); // never prints
+	}
+
+	@Override
+	Object evaluate(Expr expr) {
+		if (!dirty.contains(expr)) return values.get(expr);
+
+		reevaluatedNodes++;
+		Object value = expr.accept(this);
+		values.put(expr, value);
+		dirty.remove(expr);
+		return value;
+	}
+
+	@Override
+	public Object visitVariableExpr(Expr.Variable expr) {
+		Formula formula = formulas.get(expr.name.lexeme);
+		if (formula != null) {
+			if (formula.error != null) throw formula.error;
+			return formula.value;
+		}
+		if (inputs.containsKey(expr.name.lexeme)) return inputs.get(expr.name.lexeme);
+
+		throw new RuntimeError(expr.name, "Undefined variable '" + expr.name.lexeme + "'.");
+	}
+  }
+}
@@ -0,0 +1,104 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayDeque;
+
+/*
+ * Lazy string concatenation for the interpreter.
+ *
+ * `"a" + "b" + "c" + ...` used to copy the whole left side on every `+`,
+ * which is quadratic in the length of the result. A Rope only remembers its
+ * two halves, so `+` is O(1), and the characters are copied once, when
+ * somebody looks at the text (toString: stringify, printing, equality).
+ *
+ * Ropes only live inside the interpreter. Anything that leaves it, or gets
+ * compared, is flattened back into a plain String first.
+ */
+final class Rope implements CharSequence {
+  // below this size copying is cheaper than keeping a node around
+  private static final int FLAT_LIMIT = 64;
+
+  private Object left; // String or Rope, null once flattened
+  private Object right;
+  private final int length;
+  private String flat;
+
+  private Rope(Object left, Object right, int length) {
+    this.left = left;
+	this.right = right;
+	this.length = length;
+  }
+
+  static boolean isString(Object value) {
+    return value instanceof String || value instanceof Rope;
+  }
+
+  /*
+   * the `+` of two lox strings (String or Rope), or null when the result
+   * would be longer than `maxLength` (at most Integer.MAX_VALUE, what a
+   * String can hold).
+   */
+  static Object concat(Object left, Object right, int maxLength) {
+    int leftLength = ((CharSequence)left).length();
+	int rightLength = ((CharSequence)right).length();
+	if (leftLength == 0) return right;
+	if (rightLength == 0) return left;
+
+	long length = (long)leftLength + rightLength;
+	if (length > maxLength) return null;
+	if (length <= FLAT_LIMIT) return left.toString() + right.toString();
+	return new Rope(left, right, (int)length);
+  }
+
+  // String for plain strings and ropes, the value itself otherwise
+  static Object flatten(Object value) {
+    if (value instanceof Rope) return value.toString();
+	return value;
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    return toString().charAt(index);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return toString().subSequence(start, end);
+  }
+
+  /*
+   * copy every leaf into place, left to right, with an explicit stack:
+   * a long `+` chain is as deep as it is long.
+   */
+  @Override
+  public String toString() {
+    if (flat != null) return flat;
+
+	char[] chars = new char[length];
+	int at = 0;
+	ArrayDeque<Object> pending = new ArrayDeque<>();
+	pending.push(this);
+	while (!pending.isEmpty()) {
+		Object node = pending.pop();
+		if (node instanceof Rope && ((Rope)node).flat == null) {
+			Rope rope = (Rope)node;
+			pending.push(rope.right);
+			pending.push(rope.left);
+			continue;
+		}
+
+		String leaf = node.toString();
+		leaf.getChars(0, leaf.length(), chars, at);
+		at += leaf.length();
+	}
+
+	flat = new String(chars);
+	left = null; // the halves are not needed anymore
+	right = null;
+	return flat;
+  }
+}
@@ -3,8 +3,10 @@ package com.craftinginterpreters.lox;
 class RuntimeError extends RuntimeException {
   final Token token;
 
+  // the lox side of the error is the token, a java stack trace would
+  // only cost time to fill in and never get printed
   RuntimeError(Token token, String message) {
-    super(message);
+    super(message, null, false, false);
 	this.token = token;
   }
 
@@ -40,6 +40,21 @@ class Scanner {
     this.source = source;
   }
 
+  // start counting lines from somewhere other than 1, used when the source
+  // is one line cut out of a bigger file (batch mode)
+  Scanner(String source, int line) {
+    this.source = source;
+	this.line = line;
+  }
+
+  // pick up scanning at `offset`, the start of a lexeme (or whitespace)
+  // on the given line. used to rescan part of an edited source (Document)
+  Scanner(String source, int offset, int line) {
+    this.source = source;
+	this.current = offset;
+	this.line = line;
+  }
+
   List<Token> scanTokens() {
     while (!isAtEnd()) {
 		// at the beginning of the next lexeme
@@ -47,10 +62,24 @@ class Scanner {
 		scanToken();
 	}
 
-	tokens.add(new Token(EOF, "", null, line));
+	tokens.add(new Token(EOF, "", null, line, current));
 	return tokens;
   }
 
+  /*
+   * scan only as far as the next token, EOF at the end.
+   * lets the caller stop as soon as it has seen enough.
+   */
+  Token nextToken() {
+    while (!isAtEnd()) {
+		start = current;
+		scanToken();
+		if (!tokens.isEmpty()) return tokens.remove(0);
+	}
+
+	return new Token(EOF, "", null, line, current);
+  }
+
   private void scanToken() {
     char c = advance();
 	switch (c){
@@ -151,7 +180,7 @@ class Scanner {
 
   private void addToken(TokenType type, Object literal) {
     String text = source.substring(start, current);
-	tokens.add(new Token(type, text, literal, line));
+	tokens.add(new Token(type, text, literal, line, start));
   }
 
   /*
@@ -250,7 +279,7 @@ class Scanner {
 	String text = source.substring(start, current);
 	TokenType type = keywords.get(text);
 	if (type == null) type = IDENTIFIER;
-	addToken(IDENTIFIER);
+	addToken(type);
   }
 
   /*
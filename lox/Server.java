@@ -0,0 +1,181 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Server mode: evaluate expressions sent over a local TCP socket so other
+ * processes don't pay for a JVM start per expression.
+ *
+ * Line protocol, one request per line and one response line per request,
+ * always in request order:
+ *   request   <lox expression>
+ *   response  ok <printed value>
+ *           | error <diagnostic, newlines folded into spaces>
+ *   request   :stats
+ *   response  stats requests=.. errors=.. throughput=../s p50=..us p99=..us
+ *
+ * Clients may pipeline: send many lines without waiting for answers.
+ * Responses are flushed once there is no more buffered input to answer.
+ *
+ * Every client gets its own thread (a virtual thread when the runtime has
+ * them) and its own Interpreter, reused for all of its requests. At most
+ * `maxActive` evaluations run at the same time, and each one is held to
+ * its own Budget of steps, time, string size and depth. The time limit is
+ * kept by a watchdog thread that cancels the budget of a request that
+ * runs over, so the evaluation does not have to read the clock.
+ */
+class Server {
+  static final int DEFAULT_MAX_DEPTH = 256; // the parser overflows a 1 MiB stack at about a thousand, before the JIT
+
+  private final int port;
+  private final Semaphore active;
+
+  // limits for every request, see Budget
+  private final long maxSteps;
+  private final long timeoutNanos;
+  private final int maxStringLength;
+  private final int maxDepth;
+  private final ScheduledExecutorService watchdog;
+
+  private final LatencyHistogram latencies = new LatencyHistogram();
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final long startedAt = System.nanoTime();
+
+  Server(int port, int maxActive, long maxSteps, long timeoutNanos, int maxStringLength, int maxDepth) {
+    this.port = port;
+	this.active = new Semaphore(maxActive);
+	this.maxSteps = maxSteps;
+	this.timeoutNanos = timeoutNanos;
+	this.maxStringLength = maxStringLength;
+	this.maxDepth = maxDepth;
+	this.watchdog = timeoutNanos > 0 ? newWatchdog() : null;
+  }
+
+  private static ScheduledExecutorService newWatchdog() {
+    ScheduledThreadPoolExecutor watchdog = new ScheduledThreadPoolExecutor(1, task -> {
+		Thread thread = new Thread(task, "jlox-server-watchdog");
+		thread.setDaemon(true);
+		return thread;
+	});
+	watchdog.setRemoveOnCancelPolicy(true); // most requests finish in time, don't keep their timers
+	return watchdog;
+  }
+
+  void serve() throws IOException {
+    serve(new ServerSocket(port, 128, InetAddress.getLoopbackAddress()));
+  }
+
+  // the same on a socket that is already bound, to any port
+  void serve(ServerSocket listening) throws IOException {
+    ExecutorService clients = newClientExecutor();
+	try (ServerSocket socket = listening) {
+		System.err.println("jlox listening on " + socket.getLocalSocketAddress());
+		for (;;) {
+			Socket client = socket.accept();
+			clients.execute(() -> handle(client));
+		}
+	} finally {
+		clients.shutdown();
+		if (watchdog != null) watchdog.shutdownNow();
+	}
+  }
+
+  /*
+   * virtual threads are only there from JDK 21 on, so look the factory up
+   * and fall back to a plain cached pool on older runtimes.
+   */
+  private static ExecutorService newClientExecutor() {
+    try {
+		Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		return (ExecutorService)factory.invoke(null);
+	} catch (ReflectiveOperationException error) {
+		return Executors.newCachedThreadPool();
+	}
+  }
+
+  private void handle(Socket client) {
+    Lox.Diagnostics diagnostics = new Lox.Diagnostics();
+	Lox.captureDiagnostics(diagnostics);
+	try (Socket socket = client;
+		BufferedReader in = new BufferedReader(
+			new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+		BufferedWriter out = new BufferedWriter(
+			new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+		Interpreter interpreter = new Interpreter();
+
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (line.equals(":stats")) {
+				out.write(stats());
+			} else {
+				out.write(evaluate(interpreter, line, diagnostics));
+			}
+			out.write('\n');
+
+			// pipelined requests are answered in one write
+			if (!in.ready()) out.flush();
+		}
+	} catch (IOException error) {
+		// client went away, nothing left to answer
+	} finally {
+		Lox.captureDiagnostics(null);
+	}
+  }
+
+  private String evaluate(Interpreter interpreter, String source, Lox.Diagnostics diagnostics) {
+    active.acquireUninterruptibly();
+	long start = System.nanoTime();
+	try {
+		diagnostics.clear();
+		Budget budget = new Budget(maxSteps, 0, maxStringLength, maxDepth);
+		ScheduledFuture<?> timeout = watchdog == null ? null
+			: watchdog.schedule(() -> budget.cancel("Evaluation timed out."), timeoutNanos, TimeUnit.NANOSECONDS);
+		String value;
+		try {
+			value = Lox.runCaptured(interpreter, source, 1, diagnostics, budget);
+		} finally {
+			if (timeout != null) timeout.cancel(false);
+		}
+		if (value != null) return "ok " + value;
+
+		errors.increment();
+		return "error " + diagnostics.toString().trim().replace('\n', ' ');
+	} finally {
+		latencies.record(System.nanoTime() - start);
+		requests.increment();
+		active.release();
+	}
+  }
+
+  String stats() {
+    long count = requests.sum();
+	double seconds = (System.nanoTime() - startedAt) / 1e9;
+	return "stats requests=" + count +
+		" errors=" + errors.sum() +
+		" throughput=" + Math.round(count / seconds) + "/s" +
+		" p50=" + micros(latencies.percentile(0.50)) + "us" +
+		" p99=" + micros(latencies.percentile(0.99)) + "us";
+  }
+
+  private static String micros(long nanos) {
+    return String.format("%.1f", nanos / 1000.0);
+  }
+}
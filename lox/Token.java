@@ -5,12 +5,14 @@ class Token{
   final String lexeme;
   final Object literal;
   final int line;
+  final int offset; // index of the first char of the lexeme in the source
 
-  Token(TokenType type, String lexeme, Object literal, int line){
+  Token(TokenType type, String lexeme, Object literal, int line, int offset){
     this.type = type;
 	this.lexeme = lexeme;
 	this.literal = literal;
 	this.line = line;
+	this.offset = offset;
   }
 
   public String toString(){
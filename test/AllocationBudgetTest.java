@@ -0,0 +1,117 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/*
+ * How many bytes scanning, parsing and evaluating may allocate, per char,
+ * token or node. A change that allocates more fails here, before anybody
+ * has to find out from a GC log.
+ *
+ * The budgets are what the phases took when they were set, plus about a
+ * quarter. When a change has to allocate more, raise the budget in the
+ * same change and say why. Measured on a warm JIT, the least of a few
+ * runs, so escape analysis has had its chance.
+ *
+ * The numbers only hold for the JVM they were taken on: HotSpot with C2
+ * and escape analysis, and compressed object headers and pointers. On
+ * anything else (-Xint, -XX:TieredStopAtLevel=1, a large heap without
+ * compressed oops, another VM) the tests are skipped, not failed.
+ */
+class AllocationBudgetTest {
+  // bytes allocated per char of source, per token and per node
+  private static final double SCAN_PER_CHAR = 72;
+  private static final double PARSE_PER_TOKEN = 136;
+  private static final double EVALUATE_PER_NODE = 15;
+
+  private static final int WARMUP = 20;
+  private static final int RUNS = 5;
+
+  private static final com.sun.management.ThreadMXBean THREADS =
+	(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+  private static String source;
+  private static List<Token> tokens;
+  private static Expr expr;
+
+  @BeforeAll
+  static void generate() {
+    assumeTrue(THREADS.isThreadAllocatedMemorySupported() && THREADS.isThreadAllocatedMemoryEnabled(),
+		"this JVM does not count allocations");
+	HotSpotDiagnosticMXBean hotspot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+	assumeTrue(hotspot != null && System.getProperty("java.vm.info", "").contains("mixed mode") &&
+		hotspot.getVMOption("TieredStopAtLevel").getValue().equals("4") &&
+		hotspot.getVMOption("DoEscapeAnalysis").getValue().equals("true"), "no C2 with escape analysis");
+	assumeTrue(Footprint.of(new ArrayList<>()).bytes == 24, "not the usual compressed layout");
+
+	// numbers, strings, comparisons and unary operators, all of which parse and evaluate
+	Random random = new Random(42);
+	StringBuilder text = new StringBuilder();
+	for (int i = 0; i < 2000; i++) {
+		if (i > 0) text.append(i % 2 == 0 ? " + " : " - ");
+		text.append("(-").append(random.nextInt(1000)).append('.').append(random.nextInt(10))
+			.append(" * ").append(random.nextInt(100)).append(')');
+	}
+	text.append(" == 0 != (\"lorem\" + \"ipsum\" == \"lorem ipsum\")");
+	source = text.toString();
+	tokens = new Scanner(source).scanTokens();
+	expr = new Parser(tokens).parse();
+  }
+
+  @Test
+  void scanning() throws InterruptedException {
+    long bytes = allocated(() -> new Scanner(source).scanTokens());
+	assertWithin("scanning", bytes / (double)source.length(), SCAN_PER_CHAR, "bytes a char");
+  }
+
+  @Test
+  void parsing() throws InterruptedException {
+    long bytes = allocated(() -> new Parser(tokens).parse());
+	assertWithin("parsing", bytes / (double)tokens.size(), PARSE_PER_TOKEN, "bytes a token");
+  }
+
+  @Test
+  void evaluating() throws InterruptedException {
+    Interpreter interpreter = new Interpreter(OutputSink.to(java.io.OutputStream.nullOutputStream(),
+		OutputSink.Flush.END, 1 << 16));
+	long bytes = allocated(() -> interpreter.evaluate(expr, null));
+	assertWithin("evaluating", bytes / (double)expr.size, EVALUATE_PER_NODE, "bytes a node");
+  }
+
+  // the least of RUNS, on a thread of its own: before the JIT is done, the
+  // 2000 levels of the chain need more stack than a default thread has
+  private static long allocated(Runnable phase) throws InterruptedException {
+    long[] least = {Long.MAX_VALUE};
+	Throwable[] failure = {null};
+	Thread thread = new Thread(null, () -> {
+		try {
+			for (int i = 0; i < WARMUP; i++) phase.run();
+			long id = Thread.currentThread().getId();
+			for (int i = 0; i < RUNS; i++) {
+				long before = THREADS.getThreadAllocatedBytes(id);
+				phase.run();
+				least[0] = Math.min(least[0], THREADS.getThreadAllocatedBytes(id) - before);
+			}
+		} catch (Throwable error) {
+			failure[0] = error;
+		}
+	}, "measured", 64L << 20);
+	thread.start();
+	thread.join();
+	if (failure[0] != null) throw new AssertionError(failure[0]);
+	return least[0];
+  }
+
+  private static void assertWithin(String phase, double measured, double budget, String unit) {
+    assertTrue(measured <= budget,
+		String.format("%s allocates %.1f %s, over its budget of %.1f", phase, measured, unit, budget));
+  }
+}
@@ -0,0 +1,165 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class AstPrinterTest {
+  private static final String[] BINARY = {"+", "-", "*", "/", "==", "!=", "<", "<=", ">", ">="};
+  private static final TokenType[] BINARY_TYPES = {
+	TokenType.PLUS, TokenType.MINUS, TokenType.STAR, TokenType.SLASH, TokenType.EQUAL_EQUAL,
+	TokenType.BANG_EQUAL, TokenType.LESS, TokenType.LESS_EQUAL, TokenType.GREATER, TokenType.GREATER_EQUAL
+  };
+
+  private final AstPrinter printer = new AstPrinter();
+
+  private static Expr parse(String source) {
+    return new Parser(new Scanner(source).scanTokens()).parse();
+  }
+
+  @Test
+  void printsTheBookExample() {
+    Expr expression = new Expr.Binary(
+		new Expr.Unary(new Token(TokenType.MINUS, "-", null, 1, 0), new Expr.Literal(123)),
+		new Token(TokenType.STAR, "*", null, 1, 5),
+		new Expr.Grouping(new Expr.Literal(45.67)));
+
+	assertEquals("(* (- 123) (group 45.67))", printer.print(expression));
+  }
+
+  @Test
+  void quotesStringsAndKeepsNamesBare() {
+    assertEquals("(== \"nil\" nil)", printer.print(parse("\"nil\" == nil")));
+	assertEquals("(+ x \"x y\")", printer.print(parse("x + \"x y\"")));
+	assertEquals("(! (group (!= true false)))", printer.print(parse("!(true != false)")));
+  }
+
+  @Test
+  void streamsTheSameIntoAWriter() throws IOException {
+    Expr expr = parse("1 + 2 * -(3 - \"four\") / five");
+	StringWriter out = new StringWriter();
+	printer.print(expr, out);
+	assertEquals(printer.print(expr), out.toString());
+  }
+
+  @Test
+  void readsBackWhatItPrinted() {
+    Random random = new Random(42);
+	for (int i = 0; i < 500; i++) {
+		Expr expr = randomTree(random, 6);
+		String printed = printer.print(expr);
+		Expr read = AstReader.read(printed);
+		assertEquals(printed, printer.print(read));
+		assertEquals(kinds(expr), kinds(read), printed);
+		assertEquals(expr.size, read.size);
+	}
+  }
+
+  @Test
+  void keepsNonFiniteNumbersApartFromNames() {
+    Expr expr = new Expr.Binary(new Expr.Literal(Double.NaN), new Token(TokenType.PLUS, "+", null, 1, 0),
+		new Expr.Variable(new Token(TokenType.IDENTIFIER, "NaN", null, 1, 0)));
+	assertEquals("(+ #NaN NaN)", printer.print(expr));
+	assertEquals("Literal Double Variable NaN Binary", kinds(AstReader.read("(+ #NaN NaN)")));
+	assertEquals("(- #Infinity #-Infinity)", printer.print(AstReader.read("(- #Infinity #-Infinity)")));
+	assertThrows(IllegalArgumentException.class, () -> AstReader.read("#nan"));
+  }
+
+  @Test
+  void evaluatesTheSameAfterARoundTrip() {
+    Interpreter interpreter = new Interpreter();
+	String[] sources = {"1 + 2 * 3", "-(4 - 1) / 3", "\"a\" + \"(b c)\" == \"a(b c)\"", "!(1 < 2) != nil",
+		"0.1 + 0.2", "1e300 * 1e300 / 7"};
+	for (String source : sources) {
+		Expr expr = parse(source);
+		Expr read = AstReader.read(printer.print(expr));
+		assertEquals(interpreter.stringify(interpreter.evaluate(expr)),
+			interpreter.stringify(interpreter.evaluate(read)), source);
+	}
+  }
+
+  @Test
+  void handlesTreesDeeperThanTheStack() throws IOException {
+    int depth = 1_000_000;
+	Token minus = new Token(TokenType.MINUS, "-", null, 1, 0);
+	Expr expr = new Expr.Literal(1.0);
+	for (int i = 0; i < depth; i++) expr = new Expr.Unary(minus, expr);
+
+	StringWriter out = new StringWriter();
+	printer.print(expr, out);
+	Expr read = AstReader.read(out.toString());
+	assertEquals(expr.size, read.size);
+	for (int i = 0; i < depth; i++) read = ((Expr.Unary)read).right;
+	assertEquals(1.0, ((Expr.Literal)read).value);
+  }
+
+  @Test
+  void readsOneExpressionAfterAnother() throws IOException {
+    AstReader reader = new AstReader(new StringReader("(+ 1 2)\n\"three\"  (group\n x)\n"));
+	assertEquals("(+ 1.0 2.0)", printer.print(reader.next()));
+	assertEquals("\"three\"", printer.print(reader.next()));
+	Expr variable = ((Expr.Grouping)reader.next()).expression;
+	assertEquals(3, ((Expr.Variable)variable).name.line);
+	assertNull(reader.next());
+  }
+
+  @Test
+  void refusesWhatItCouldNotHavePrinted() {
+    String[] bad = {"", "(+ 1 2", "(+ 1 2))", "(% 1 2)", "(+ 1 2 3)", "(! 1 2)", "(group)", "(* 1)",
+		"\"open", "1.2.3", "x-y", "-", "1 2", "#", "#x"};
+	for (String text : bad) {
+		assertThrows(IllegalArgumentException.class, () -> AstReader.read(text), text);
+	}
+  }
+
+  private static Expr randomTree(Random random, int depth) {
+    int kind = depth == 0 ? 4 + random.nextInt(4) : random.nextInt(8);
+	switch (kind) {
+		case 0:
+		case 1: {
+			int operator = random.nextInt(BINARY.length);
+			return new Expr.Binary(randomTree(random, depth - 1),
+				new Token(BINARY_TYPES[operator], BINARY[operator], null, 1, 0), randomTree(random, depth - 1));
+		}
+		case 2:
+			return random.nextBoolean()
+				? new Expr.Unary(new Token(TokenType.MINUS, "-", null, 1, 0), randomTree(random, depth - 1))
+				: new Expr.Unary(new Token(TokenType.BANG, "!", null, 1, 0), randomTree(random, depth - 1));
+		case 3:
+			return new Expr.Grouping(randomTree(random, depth - 1));
+		case 4:
+			if (random.nextInt(8) == 0) {
+				return new Expr.Literal(new double[] {Double.NaN, Double.POSITIVE_INFINITY,
+					Double.NEGATIVE_INFINITY}[random.nextInt(3)]);
+			}
+			return new Expr.Literal(random.nextInt(3) == 0 ? -random.nextDouble() * 1e12 : random.nextDouble());
+		case 5:
+			return new Expr.Literal(new String[] {"", "a b", "(+ 1 2)", "line\nbreak", "nil"}[random.nextInt(5)]);
+		case 6:
+			return new Expr.Literal(new Object[] {null, true, false}[random.nextInt(3)]);
+		default: {
+			// names a number is printed as without the #
+			String name = random.nextInt(4) == 0 ? (random.nextBoolean() ? "NaN" : "Infinity") : "v" + random.nextInt(100);
+			return new Expr.Variable(new Token(TokenType.IDENTIFIER, name, null, 1, 0));
+		}
+	}
+  }
+
+  // the kind of every node, children first, and what type a literal is or a variable is called
+  private static String kinds(Expr expr) {
+    if (expr instanceof Expr.Binary) {
+		return kinds(((Expr.Binary)expr).left) + " " + kinds(((Expr.Binary)expr).right) + " Binary";
+	}
+	if (expr instanceof Expr.Unary) return kinds(((Expr.Unary)expr).right) + " Unary";
+	if (expr instanceof Expr.Grouping) return kinds(((Expr.Grouping)expr).expression) + " Grouping";
+	if (expr instanceof Expr.Variable) return "Variable " + ((Expr.Variable)expr).name.lexeme;
+	Object value = ((Expr.Literal)expr).value;
+	return "Literal " + (value == null ? "nil" : value.getClass().getSimpleName());
+  }
+}
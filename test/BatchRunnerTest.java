@@ -0,0 +1,112 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+class BatchRunnerTest {
+  // good lines, blank ones, parse errors and runtime errors, over many chunks
+  private static List<String> lines(int count, long seed) {
+    Random random = new Random(seed);
+	String[] kinds = {"%d + %d", "\"a\" + \"%d\" + \"%d\"", "", "%d * (%d", "-\"%d%d\"", "%d / 0 == %d",
+		"!%d == !%d", "(%d > %d) + 1"};
+	List<String> lines = new ArrayList<>();
+	for (int i = 0; i < count; i++) {
+		lines.add(String.format(kinds[random.nextInt(kinds.length)], random.nextInt(100), random.nextInt(100)));
+	}
+	return lines;
+  }
+
+  // what running every chunk one after the other on this thread prints: {out, err}
+  private static String[] sequential(List<String> lines) {
+    StringBuilder out = new StringBuilder();
+	Lox.Diagnostics errors = new Lox.Diagnostics();
+	Interpreter interpreter = new Interpreter();
+	Lox.captureDiagnostics(errors);
+	try {
+		for (int i = 0; i < lines.size(); i++) {
+			if (lines.get(i).isBlank()) continue;
+			String value = Lox.runCaptured(interpreter, lines.get(i), i + 1, errors);
+			if (value != null) out.append(value).append('\n');
+		}
+	} finally {
+		Lox.captureDiagnostics(null);
+	}
+	return new String[] {out.toString(), errors.toString()};
+  }
+
+  private static String[] batched(List<String> lines, int threads, int window) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+	ByteArrayOutputStream err = new ByteArrayOutputStream();
+	ExecutorService executor = new ForkJoinPool(threads);
+	try {
+		new BatchRunner(executor, window).run(new BufferedReader(new StringReader(String.join("\n", lines))),
+			new PrintStream(out, false, StandardCharsets.UTF_8), new PrintStream(err, false, StandardCharsets.UTF_8));
+	} finally {
+		executor.shutdown();
+	}
+	return new String[] {out.toString(StandardCharsets.UTF_8), err.toString(StandardCharsets.UTF_8)};
+  }
+
+  @Test
+  void printsWhatRunningTheChunksInOrderPrints() throws IOException {
+    List<String> lines = lines(3000, 26);
+	String[] expected = sequential(lines);
+	assertTrue(expected[1].contains("[line "), "the input has errors in it");
+
+	for (int threads : new int[] {1, 4}) {
+		for (int window : new int[] {1, 3, 64}) {
+			String[] actual = batched(lines, threads, window);
+			assertEquals(expected[0], actual[0], threads + " threads, window " + window);
+			assertEquals(expected[1], actual[1], threads + " threads, window " + window);
+		}
+	}
+  }
+
+  @Test
+  void keepsErrorsToTheRunnerAndTheLine() throws IOException {
+    Lox.hadError = false;
+	Lox.hadRuntimeError = false;
+	String deep = "(".repeat(1_000_000) + "1" + ")".repeat(1_000_000);
+	List<String> lines = List.of("1 + 2", deep, "-\"x\"", "3");
+
+	ByteArrayOutputStream out = new ByteArrayOutputStream();
+	ByteArrayOutputStream err = new ByteArrayOutputStream();
+	ExecutorService executor = new ForkJoinPool(2);
+	BatchRunner runner = new BatchRunner(executor, 2);
+	try {
+		runner.run(new BufferedReader(new StringReader(String.join("\n", lines))),
+			new PrintStream(out, false, StandardCharsets.UTF_8), new PrintStream(err, false, StandardCharsets.UTF_8));
+	} finally {
+		executor.shutdown();
+	}
+
+	assertEquals("3\n3\n", out.toString(StandardCharsets.UTF_8));
+	assertEquals("[line 2] Error: Expression nested too deeply.\nOperand must be a number.\n[line 3]\n",
+		err.toString(StandardCharsets.UTF_8));
+	assertTrue(runner.hadError && runner.hadRuntimeError);
+	assertFalse(Lox.hadError || Lox.hadRuntimeError, "workers do not touch the flags of the script");
+  }
+
+  @Test
+  void handlesEmptyAndChunkSizedInputs() throws IOException {
+    assertEquals("", batched(List.of(), 2, 2)[0]);
+	List<String> lines = lines(256, 7);
+	assertEquals(sequential(lines)[0], batched(lines, 2, 2)[0]);
+	lines.add("1 + 1");
+	assertEquals(sequential(lines)[0], batched(lines, 2, 2)[0]);
+  }
+}
@@ -0,0 +1,139 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class BudgetTest {
+  private static Expr parse(String source, int maxDepth) {
+    Lox.Diagnostics errors = new Lox.Diagnostics();
+	Lox.captureDiagnostics(errors);
+	try {
+		return new Parser(new Scanner(source).scanTokens(), maxDepth).parse();
+	} finally {
+		Lox.captureDiagnostics(null);
+	}
+  }
+
+  @Test
+  void limitsEveryKindOfNesting() {
+    String[] shapes = {"(", "-", "!"};
+	for (String open : shapes) {
+		String close = open.equals("(") ? ")" : "";
+		assertNotNull(parse(open.repeat(9) + "1" + close.repeat(9), 10), open);
+		assertNull(parse(open.repeat(10) + "1" + close.repeat(10), 10), open);
+	}
+	assertNotNull(parse("1" + " + 1".repeat(9), 10));
+	assertNull(parse("1" + " + 1".repeat(10), 10), "a chain is as deep as it is long");
+	assertNull(parse("(".repeat(1_000_000), 10), "stops long before the stack would");
+	assertNotNull(parse("(".repeat(100) + "1" + ")".repeat(100), 0), "0 is no limit");
+  }
+
+  @Test
+  void countsTheDepthOfEveryTree() {
+    assertEquals(1, parse("1", 0).depth);
+	assertEquals(5, parse("-(1 + 2) * 3", 0).depth);
+	assertEquals(5, parse("1 + 2 + 3 + 4 + 5", 0).depth);
+  }
+
+  @Test
+  void stopsWhenCancelled() {
+    Budget budget = new Budget(0, 0, 0);
+	Interpreter interpreter = new Interpreter();
+	Expr expr = parse("1 + 2", 0);
+	assertEquals(3.0, interpreter.evaluate(expr, budget));
+
+	budget.cancel("Evaluation timed out.");
+	RuntimeError error = assertThrows(RuntimeError.class, () -> interpreter.evaluate(expr, budget));
+	assertEquals("Evaluation timed out.", error.getMessage());
+  }
+
+  // `count` operators adding up 1s, as a balanced tree so it is not deep
+  private static Expr operators(int count) {
+    return parse(sum(count + 1), 0);
+  }
+
+  private static String sum(int ones) {
+    if (ones == 1) return "1";
+	return "(" + sum(ones / 2) + ") + (" + sum(ones - ones / 2) + ")";
+  }
+
+  @Test
+  void allowsExactlyTheStepsItGrants() {
+    Interpreter interpreter = new Interpreter();
+	for (int steps : new int[] {1, 3, 1024, 1025, 3000}) { // within one grant and across several
+		assertEquals(steps + 1.0, interpreter.evaluate(operators(steps), new Budget(steps, 0, 0)));
+		RuntimeError error = assertThrows(RuntimeError.class,
+			() -> interpreter.evaluate(operators(steps + 1), new Budget(steps, 0, 0)));
+		assertEquals("Evaluation step limit exceeded.", error.getMessage());
+	}
+  }
+
+  @Test
+  void stopsAfterTheDeadline() throws Exception {
+    Budget budget = new Budget(0, 1, 0);
+	Thread.sleep(2);
+	RuntimeError error = assertThrows(RuntimeError.class,
+		() -> new Interpreter().evaluate(operators(1), budget));
+	assertEquals("Evaluation timed out.", error.getMessage());
+  }
+
+  @Test
+  void capsTheLengthOfStrings() {
+    Interpreter interpreter = new Interpreter();
+	assertEquals("1234567890", Rope.flatten(interpreter.evaluate(parse("\"12345\" + \"67890\"", 0), new Budget(0, 0, 10))));
+	RuntimeError error = assertThrows(RuntimeError.class,
+		() -> interpreter.evaluate(parse("\"12345\" + \"67890\" + \"1\"", 0), new Budget(0, 0, 10)));
+	assertEquals("String too long.", error.getMessage());
+	assertEquals("+", error.token.lexeme);
+
+	String half = "\"" + "x".repeat(100) + "\"";
+	error = assertThrows(RuntimeError.class,
+		() -> interpreter.evaluate(parse(half + " + " + half, 0), new Budget(0, 0, 199)), "past FLAT_LIMIT");
+	assertEquals("String too long.", error.getMessage());
+  }
+
+  @Test
+  void refusesStringsLongerThanAStringCanBe() {
+    Object rope = "x".repeat(100);
+	for (int i = 0; i < 24; i++) rope = Rope.concat(rope, rope, Integer.MAX_VALUE); // shares its halves
+	assertEquals(100 << 24, ((CharSequence)rope).length());
+	assertNull(Rope.concat(rope, rope, Integer.MAX_VALUE), "no int overflow into a negative length");
+  }
+
+  @Test
+  void reportsRunningOutAsARuntimeError() throws Exception {
+    Budget late = new Budget(0, 1, 0);
+	Thread.sleep(2);
+	Budget cancelled = new Budget(0, 0, 0);
+	cancelled.cancel();
+	Object[][] cases = {
+		{"1 + 1 + 1", new Budget(1, 0, 0), "Evaluation step limit exceeded."},
+		{"-1", late, "Evaluation timed out."},
+		{"-2", cancelled, "Evaluation cancelled."},
+		{"\"ab\" + \"c\"", new Budget(0, 0, 2), "String too long."},
+	};
+	Interpreter interpreter = new Interpreter();
+	Lox.Diagnostics errors = new Lox.Diagnostics();
+	Lox.captureDiagnostics(errors);
+	try {
+		for (Object[] failing : cases) {
+			errors.clear();
+			assertNull(Lox.runCaptured(interpreter, (String)failing[0], 1, errors, (Budget)failing[1]));
+			assertEquals(failing[2] + "\n[line 1]\n", errors.text.toString());
+			assertTrue(errors.hadRuntimeError && !errors.hadError, (String)failing[0]);
+
+			// and the interpreter is none the worse for it
+			errors.clear();
+			assertEquals("3", Lox.runCaptured(interpreter, "1 + 1 + 1", 1, errors));
+			assertEquals("", errors.text.toString());
+		}
+	} finally {
+		Lox.captureDiagnostics(null);
+	}
+  }
+}
@@ -0,0 +1,106 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class ColumnEvaluatorTest {
+  private static final String[] EXPRESSIONS = {
+	"(x * 2 + y / 3 - z * z) * 0.5 + x * y",
+	"x < y == !(z >= 0)",
+	"-x / (y - y)",
+	"x == x != (y <= 1 + 2 * 3)",
+	"x + 1 == nil",
+	"\"a\" + \"b\" == \"ab\" == (x > 0)",
+	"!x",
+	"x + \"s\"",
+	"-(x > y)",
+	"(1 + 2) * x",
+  };
+
+  private static Expr parse(String source) {
+    return new Parser(new Scanner(source).scanTokens()).parse();
+  }
+
+  private static Map<String, double[]> columns(int rows, long seed) {
+    Random random = new Random(seed);
+	Map<String, double[]> columns = new LinkedHashMap<>();
+	for (String name : new String[] {"x", "y", "z"}) {
+		double[] column = new double[rows];
+		for (int i = 0; i < rows; i++) {
+			// a few of the values lox equality is picky about
+			int pick = random.nextInt(20);
+			column[i] = pick == 0 ? Double.NaN : pick == 1 ? -0.0 : pick == 2 ? 0.0 : random.nextInt(21) - 10;
+		}
+		columns.put(name, column);
+	}
+	return columns;
+  }
+
+  // what the interpreter says for every row, or its first error
+  private static Object rowByRow(Expr expr, Map<String, double[]> columns, int rows, boolean bool) {
+    double[] numbers = new double[rows];
+	boolean[] booleans = new boolean[rows];
+	for (int row = 0; row < rows; row++) {
+		Interpreter interpreter = new Interpreter(new OutputSink.InMemory());
+		for (Map.Entry<String, double[]> column : columns.entrySet()) {
+			interpreter.environment.define(column.getKey(), column.getValue()[row]);
+		}
+		try {
+			Object value = interpreter.evaluate(expr);
+			if (bool) booleans[row] = (boolean)value; else numbers[row] = (double)value;
+		} catch (RuntimeError error) {
+			return error.getMessage() + " at row " + row;
+		}
+	}
+	return bool ? booleans : numbers;
+  }
+
+  @Test
+  void matchesTheInterpreterRowByRow() {
+    int rows = 3000; // two full batches and a part
+	Map<String, double[]> columns = columns(rows, 36);
+	for (String source : EXPRESSIONS) {
+		Expr expr = parse(source);
+		Object columnar;
+		try {
+			columnar = ColumnEvaluator.evaluate(expr, columns);
+		} catch (ColumnEvaluator.RowError error) {
+			columnar = error.getMessage() + " at row " + error.row;
+		}
+		Object expected = rowByRow(expr, columns, rows, columnar instanceof boolean[]);
+		if (columnar instanceof double[]) {
+			assertArrayEquals((double[])expected, (double[])columnar, source);
+		} else if (columnar instanceof boolean[]) {
+			assertArrayEquals((boolean[])expected, (boolean[])columnar, source);
+		} else {
+			assertEquals(expected, columnar, source);
+		}
+	}
+  }
+
+  @Test
+  void failsNothingWithoutRows() {
+    Map<String, double[]> none = Map.of("x", new double[0]);
+	assertArrayEquals(new double[0], (double[])ColumnEvaluator.evaluate(parse("x + \"s\""), none));
+	assertArrayEquals(new double[0], (double[])ColumnEvaluator.evaluate(parse("-\"s\""), none));
+	assertArrayEquals(new double[0], (double[])ColumnEvaluator.evaluate(parse("undefined * 2"), none));
+	assertArrayEquals(new boolean[0], (boolean[])ColumnEvaluator.evaluate(parse("x > 1"), none));
+	assertArrayEquals(new double[0], (double[])ColumnEvaluator.evaluate(parse("x * 2"), none));
+  }
+
+  @Test
+  void reportsTypeErrorsAtTheFirstRow() {
+    ColumnEvaluator.RowError error = assertThrows(ColumnEvaluator.RowError.class,
+		() -> ColumnEvaluator.evaluate(parse("1 + (x < 2)"), columns(5, 1)));
+	assertEquals(0, error.row);
+	assertEquals("Operands must be two numbers or two strings.", error.getMessage());
+	assertThrows(IllegalArgumentException.class,
+		() -> ColumnEvaluator.evaluate(parse("x"), Map.of("x", new double[2], "y", new double[3])));
+  }
+}
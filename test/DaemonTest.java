@@ -0,0 +1,137 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DaemonTest {
+  @TempDir
+  static Path directory;
+
+  private static Path socket;
+
+  @BeforeAll
+  static void startDaemon() throws Exception {
+    socket = directory.resolve("jlox.sock");
+	Thread daemon = new Thread(() -> {
+		try {
+			new Daemon(socket).serve();
+		} catch (IOException error) {
+			throw new RuntimeException(error);
+		}
+	}, "jlox-daemon");
+	daemon.setDaemon(true); // serves until the tests are over
+	daemon.start();
+	for (int i = 0; i < 600 && !Files.exists(socket); i++) Thread.sleep(50); // after its warm up
+  }
+
+  private static SocketChannel connect() throws IOException {
+    return SocketChannel.open(UnixDomainSocketAddress.of(socket));
+  }
+
+  // what DaemonClient gets back: {stdout, stderr, exit status}
+  private static String[] forward(boolean terminal, String stdin, String... args) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+	ByteArrayOutputStream err = new ByteArrayOutputStream();
+	int status;
+	try (SocketChannel channel = connect()) {
+		status = DaemonClient.forward(channel, args, terminal,
+			new ByteArrayInputStream(stdin.getBytes(StandardCharsets.UTF_8)), out, err);
+	}
+	return new String[] {out.toString(StandardCharsets.UTF_8), err.toString(StandardCharsets.UTF_8), "" + status};
+  }
+
+  private static String script(String source) throws IOException {
+    Path path = Files.createTempFile(directory, "script", ".lox");
+	Files.writeString(path, source);
+	return path.toString();
+  }
+
+  @Test
+  void speaksTheWireFormat() throws Exception {
+    try (SocketChannel channel = connect()) {
+		DataOutputStream out = new DataOutputStream(Daemon.outputOf(channel));
+		DataInputStream in = new DataInputStream(Daemon.inputOf(channel));
+		out.writeInt(1);
+		out.writeUTF("--pipe");
+		out.writeBoolean(false);
+		// lines split across frames. the line after a runtime error ends the run
+		for (String frame : new String[] {"1 +", " 2\n-\"", "x\"\n1\n"}) {
+			out.writeByte(Daemon.STDIN);
+			out.writeInt(frame.length());
+			out.writeBytes(frame);
+		}
+		out.writeByte(Daemon.STDIN);
+		out.writeInt(0);
+		out.flush();
+
+		StringBuilder[] streams = {null, new StringBuilder(), new StringBuilder()};
+		for (;;) {
+			byte type = in.readByte();
+			int length = in.readInt();
+			if (type == Daemon.EXIT) {
+				assertEquals(4, length);
+				assertEquals(70, in.readInt());
+				break;
+			}
+			streams[type].append(new String(in.readNBytes(length), StandardCharsets.UTF_8));
+		}
+		assertEquals("3\n", streams[Daemon.STDOUT].toString());
+		assertEquals("Operand must be a number.\n[line 1]\n", streams[Daemon.STDERR].toString());
+	}
+  }
+
+  @Test
+  void forwardsTheExitStatus() throws Exception {
+    String[] good = forward(false, "", "--batch", script("1 + 2\n3\n"));
+	assertEquals("3\n3\n", good[0]);
+	assertEquals("0", good[2]);
+
+	String[] syntax = forward(false, "", "--batch", script("1\n(1 +\n"));
+	assertEquals("1\n", syntax[0]);
+	assertEquals("[line 2] Error at end: Expect expression.\n", syntax[1]);
+	assertEquals("65", syntax[2]);
+
+	String[] runtime = forward(false, "", "--batch", script("1\n-\"x\"\n"));
+	assertEquals("Operand must be a number.\n[line 2]\n", runtime[1]);
+	assertEquals("70", runtime[2]);
+
+	assertEquals("64", forward(false, "", "--serve")[2]);
+  }
+
+  @Test
+  void readsStdinTheWayTheClientsIsUsed() throws Exception {
+    String[] piped = forward(false, "1 + 2\n\"a\" + \"b\"\n");
+	assertEquals("3\nab\n", piped[0], "no prompts into a pipe");
+	assertEquals("0", piped[2]);
+
+	String[] typed = forward(true, "1 + 2\n");
+	assertEquals("> 3\n> ", typed[0]);
+	assertEquals("0", typed[2]);
+  }
+
+  @Test
+  void forwardsMoreStdinThanFitsInAFrame() throws Exception {
+    StringBuilder lines = new StringBuilder();
+	StringBuilder expected = new StringBuilder();
+	for (int i = 0; i < 20_000; i++) {
+		lines.append(i).append(" + 1\n");
+		expected.append(i + 1).append('\n');
+	}
+	String[] result = forward(false, lines.toString(), "--pipe");
+	assertEquals(expected.toString(), result[0]);
+	assertEquals("0", result[2]);
+  }
+}
@@ -0,0 +1,150 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DocumentTest {
+  private static final String[] PIECES = {
+	"1", "23", "4.5", ".", "6.", "x", "name", "nil", "true", "or", "\"s\"", "\"two\nlines\"", "\"",
+	"+", "-", "*", "/", "!", "==", "!=", "<", "<=", ">", ">=", "=", "(", ")", " ", "  ", "\n",
+	"// note\n", "/", "@",
+  };
+
+  // scan errors of the rescanned parts would go to stderr otherwise
+  private final Lox.Diagnostics errors = new Lox.Diagnostics();
+
+  @BeforeEach
+  void capture() {
+    Lox.captureDiagnostics(errors);
+  }
+
+  @AfterEach
+  void release() {
+    Lox.captureDiagnostics(null);
+  }
+
+  private static String piece(Random random) {
+    return PIECES[random.nextInt(PIECES.length)];
+  }
+
+  // the tokens as plain text, positions and literals included
+  private static String describe(List<Token> tokens) {
+    StringBuilder out = new StringBuilder();
+	for (Token token : tokens) {
+		out.append(token.type).append(' ').append(token.lexeme).append(' ').append(token.literal)
+			.append(" @").append(token.line).append(':').append(token.offset).append('\n');
+	}
+	return out.toString();
+  }
+
+  // the tree printed, then where each of its tokens is
+  private static String describe(Expr tree) {
+    if (tree == null) return "null";
+	StringBuilder out = new StringBuilder(new AstPrinter().print(tree));
+	Deque<Expr> pending = new ArrayDeque<>();
+	pending.push(tree);
+	while (!pending.isEmpty()) {
+		Expr node = pending.pop();
+		Token token = null;
+		if (node instanceof Expr.Binary) {
+			token = ((Expr.Binary)node).operator;
+			pending.push(((Expr.Binary)node).right);
+			pending.push(((Expr.Binary)node).left);
+		} else if (node instanceof Expr.Unary) {
+			token = ((Expr.Unary)node).operator;
+			pending.push(((Expr.Unary)node).right);
+		} else if (node instanceof Expr.Grouping) {
+			pending.push(((Expr.Grouping)node).expression);
+		} else if (node instanceof Expr.Variable) {
+			token = ((Expr.Variable)node).name;
+		}
+		if (token != null) out.append(' ').append(token.lexeme).append('@').append(token.line).append(':').append(token.offset);
+	}
+	return out.toString();
+  }
+
+  private static void assertSameAsFromScratch(Document document, String context) {
+    List<Token> tokens = new Scanner(document.source()).scanTokens();
+	assertEquals(describe(tokens), describe(document.tokens()), context);
+	assertEquals(describe(new Parser(tokens).parse()), describe(document.tree()), context);
+  }
+
+  @Test
+  void staysEqualToAFullScanAndParse() {
+    Random random = new Random(34);
+	for (int round = 0; round < 200; round++) {
+		StringBuilder start = new StringBuilder();
+		for (int i = random.nextInt(30); i > 0; i--) start.append(piece(random));
+		Document document = new Document(start.toString());
+
+		for (int step = 0; step < 30; step++) {
+			String source = document.source();
+			int offset = random.nextInt(source.length() + 1);
+			int removed = random.nextInt(Math.min(4, source.length() - offset) + 1);
+			StringBuilder inserted = new StringBuilder();
+			for (int i = random.nextInt(3); i > 0; i--) inserted.append(piece(random));
+
+			document.edit(offset, removed, inserted.toString());
+			assertSameAsFromScratch(document, "round " + round + ", step " + step + ": " +
+				source.replace("\n", "\\n") + " with " + removed + " chars at " + offset + " replaced by " +
+				inserted.toString().replace("\n", "\\n"));
+		}
+	}
+  }
+
+  @Test
+  void staysEqualWhileTypingAValidExpression() {
+    Random random = new Random(7);
+	Document document = new Document("1");
+	for (int step = 0; step < 500; step++) {
+		// keep it valid: put a new operand in front of an old one
+		String source = document.source();
+		int at = random.nextBoolean() ? 0 : source.lastIndexOf(' ') + 1;
+		String operand = random.nextBoolean() ? "(" + random.nextInt(100) + ") " : "v" + step + " ";
+		document.edit(at, 0, operand + PIECES[13 + random.nextInt(4)] + " ");
+		assertSameAsFromScratch(document, "step " + step);
+	}
+  }
+
+  @Test
+  void reparsesOnlyTheGroupingAroundAnEdit() {
+    Document document = new Document("1 + 2 * (3 - 5) / 4");
+	document.edit(9, 1, "30");
+	assertEquals("1 + 2 * (30 - 5) / 4", document.source());
+	assertSameAsFromScratch(document, "one literal");
+	assertEquals(2, document.rescannedTokens, "the literal and the '(' before it");
+	assertEquals(5, document.reparsedTokens, "(30 - 5)");
+  }
+
+  @Test
+  void rescansFromAnOffsetAsAFullScanWould() {
+    String source = "a + \"b\nc\" * 12.5 // d\n- (e >= 3)";
+	List<Token> full = new Scanner(source).scanTokens();
+	for (int i = 0; i < full.size(); i++) {
+		int offset = full.get(i).offset;
+		int line = 1 + (int)source.substring(0, offset).chars().filter(c -> c == '\n').count();
+		List<Token> rest = new Scanner(source, offset, line).scanTokens(); // a token's line is where it ends
+		assertEquals(describe(full.subList(i, full.size())), describe(rest), "from token " + i);
+	}
+  }
+
+  @Test
+  void parsesExactlyOneExpressionWithoutReporting() {
+    assertInstanceOf(Expr.Binary.class, new Parser(new Scanner("1 + 2").scanTokens()).parseExactly());
+	assertInstanceOf(Expr.Grouping.class, new Parser(new Scanner("(1)").scanTokens()).parseExactly());
+	assertNull(new Parser(new Scanner("(1) 2").scanTokens()).parseExactly(), "more after it");
+	assertNull(new Parser(new Scanner("(1").scanTokens()).parseExactly(), "not finished");
+	assertNull(new Parser(new Scanner("").scanTokens()).parseExactly(), "nothing there");
+	assertEquals("", errors.toString());
+  }
+}
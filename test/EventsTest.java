@@ -0,0 +1,93 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+class EventsTest {
+  private interface Body {
+    void run() throws Exception;
+  }
+
+  // the jlox events `body` commits, as "name tokens/nodes failed"
+  private static List<String> recorded(Body body) throws Exception {
+    Path file = Files.createTempFile("jlox", ".jfr");
+	try (Recording recording = new Recording()) {
+		recording.enable("jlox.Scan");
+		recording.enable("jlox.Parse");
+		recording.enable("jlox.Evaluate");
+		recording.start();
+		body.run();
+		recording.stop();
+		recording.dump(file);
+
+		List<String> events = new ArrayList<>();
+		for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+			String name = event.getEventType().getName();
+			if (name.equals("jlox.Scan")) {
+				events.add("scan " + event.getInt("tokens"));
+			} else if (name.equals("jlox.Parse")) {
+				events.add("parse " + event.getInt("tokens") + "/" + event.getInt("nodes") + " " + event.getBoolean("failed"));
+			} else {
+				events.add("evaluate " + event.getInt("nodes") + " " + event.getBoolean("failed"));
+			}
+		}
+		events.sort(null); // stages end in any order
+		return events;
+	} finally {
+		Files.delete(file);
+	}
+  }
+
+  private static Expr parse(String source) {
+    return new Parser(new Scanner(source).scanTokens()).parse();
+  }
+
+  @Test
+  void pipelineStagesAreOneEventEach() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+	List<String> events = recorded(() ->
+		new Pipeline(new PrintStream(out, false, Charset.defaultCharset()), false).run("print 1 + 2;\n3;\n"));
+	assertEquals(List.of("evaluate 1 false", "evaluate 3 false", "parse 8/4 false", "scan 8"), events);
+	assertEquals("3\n", out.toString(Charset.defaultCharset()));
+  }
+
+  @Test
+  void everyEvaluatorReportsWholeEvaluations() throws Exception {
+    String wide = "1";
+	while (wide.length() < 8 * ParallelEvaluator.THRESHOLD) wide = "(" + wide + ") + (" + wide + ")";
+	Expr big = parse(wide);
+	ForkJoinPool pool = new ForkJoinPool(2);
+	try {
+		List<String> events = recorded(() -> new ParallelEvaluator(pool, new Environment()).evaluate(big));
+		assertEquals(List.of("evaluate " + big.size + " false"), events, "not one per task");
+	} finally {
+		pool.shutdown();
+	}
+
+	Map<String, double[]> columns = Map.of("x", new double[] {1, 2, 3});
+	assertEquals(List.of("evaluate 3 false"), recorded(() -> ColumnEvaluator.evaluate(parse("x * 2"), columns)));
+	assertEquals(List.of("evaluate 2 true"), recorded(() ->
+		assertThrows(RuntimeError.class, () -> ColumnEvaluator.evaluate(parse("-y"), columns))));
+
+	Reactive reactive = new Reactive();
+	reactive.setInput("a", 1.0);
+	reactive.define("b", parse("a + 1"));
+	reactive.define("c", parse("b * 2"));
+	assertEquals(List.of("evaluate 3 false", "evaluate 3 false"), recorded(reactive::update));
+  }
+}
@@ -0,0 +1,95 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class FootprintTest {
+  private static List<Token> scan(String source) {
+    return new Scanner(source).scanTokens();
+  }
+
+  @Test
+  void countsEveryTokenWithWhatItOwns() {
+    Footprint footprint = Footprint.of(scan("1 + \"two\" * three"));
+
+	assertEquals(6, footprint.count("Token")); // and EOF
+	assertEquals(1, footprint.count("Double"));
+	assertEquals(1, footprint.count("ArrayList"));
+	assertEquals(footprint.bytes, footprint.owned("Token") + footprint.owned("(root)"));
+	assertEquals(footprint.owned("Token") / 6.0, footprint.perObject("Token"));
+	assertEquals(footprint.bytes / 17.0, footprint.perSourceByte(17));
+  }
+
+  @Test
+  void breaksATreeDownByNodeType() {
+    Expr expr = new Parser(scan("-(1 + 2) * 3")).parse();
+	Footprint footprint = Footprint.of(expr);
+
+	assertEquals(2, footprint.count("Expr.Binary"));
+	assertEquals(1, footprint.count("Expr.Unary"));
+	assertEquals(1, footprint.count("Expr.Grouping"));
+	assertEquals(3, footprint.count("Expr.Literal"));
+	assertEquals(3, footprint.count("Token")); // the operators, literals keep only their values
+	assertTrue(footprint.perObject("Expr.Literal") > footprint.shallow("Expr.Literal") / 3.0,
+		"a literal owns its value");
+  }
+
+  @Test
+  void countsWhatIsSharedOnce() {
+    List<Token> tokens = scan("1 + 2");
+	Expr expr = new Parser(tokens).parse();
+	List<Object> both = new ArrayList<>(List.of(tokens, expr));
+
+	Footprint footprint = Footprint.of(both);
+	assertEquals(2, footprint.count("Double")); // literals share their values with the tokens
+	assertEquals(4, footprint.count("Token"));
+	assertTrue(footprint.bytes < Footprint.of(tokens).bytes + Footprint.of(expr).bytes);
+  }
+
+  @Test
+  void followsHotSpotLayout() {
+    assumeTrue(Footprint.of(new ArrayList<>()).bytes == 24, "not the usual compressed layout");
+
+	// header 12, type, lexeme, literal, line, offset: 32
+	Footprint token = Footprint.of(new Token(TokenType.NUMBER, "", 1.0, 1, 0));
+	assertEquals(32, token.shallow("Token"));
+	assertEquals(24, token.shallow("Double")); // the double starts at 16
+	assertEquals(24, token.shallow("String"));
+	assertEquals(16, token.shallow("byte[]"));
+
+	// ten references and the array header, after the first add
+	List<Token> one = new ArrayList<>();
+	one.add(new Token(TokenType.NIL, "", null, 1, 0));
+	assertEquals(24 + 16 + 40, Footprint.of(one).owned("(root)"));
+  }
+
+  @Test
+  void retainsNoMoreThanScanningAllocated() {
+    com.sun.management.ThreadMXBean threads =
+		(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+	StringBuilder source = new StringBuilder();
+	for (int i = 0; i < 1000; i++) source.append(i).append(" + \"s").append(i).append("\" + ");
+	source.append('0');
+
+	long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	List<Token> tokens = scan(source.toString());
+	long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+	long retained = Footprint.of(tokens).bytes;
+	assertTrue(retained <= allocated, retained + " retained, but only " + allocated + " allocated");
+	assertTrue(retained > allocated / 4, retained + " retained of " + allocated + " allocated");
+  }
+
+  @Test
+  void refusesWhatItCanNotSize() {
+    assertThrows(IllegalArgumentException.class, () -> Footprint.of(Map.of("a", 1)));
+  }
+}
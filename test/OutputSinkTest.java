@@ -0,0 +1,103 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class OutputSinkTest {
+  /*
+   * an InMemory sink that also records how many bytes each drain handed
+   * over, to see when the policy flushes.
+   */
+  private static class Recording extends OutputSink.InMemory {
+    final List<Integer> drains = new ArrayList<>();
+
+	Recording(Flush policy, int threshold) {
+		super(policy, threshold);
+	}
+
+	@Override
+	void drain(byte[] chunk, int chunkLength) {
+		drains.add(chunkLength);
+		super.drain(chunk, chunkLength);
+	}
+  }
+
+  @Test
+  void printsWhatStringifyPrints() {
+    Object[] values = {
+		null, true, false,
+		0.0, -0.0, 1.0, -1.0, 7.0, 9_999_999.0, -9_999_999.0, 1e7, -1e7, 12345678.0,
+		0.5, -2.25, 0.1, 1e-5, 123.456, 1e21, -1e21, 1e300, Double.MIN_VALUE,
+		9007199254740992.0, 9007199254740993.0, 18014398509481988.0, (double)Long.MAX_VALUE, (double)Long.MIN_VALUE,
+		Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+		"", "plain", "café", "日本語", "😀 grin", "tab\tand\nnewline",
+		"y".repeat(70_000), "é".repeat(40_000), // past the buffer, as chars and as bytes
+	};
+	Interpreter interpreter = new Interpreter();
+	for (Object value : values) {
+		OutputSink.InMemory sink = new OutputSink.InMemory();
+		sink.print(value);
+		String context = value instanceof CharSequence && ((CharSequence)value).length() > 20
+			? "a long string" : String.valueOf(value);
+		assertEquals(interpreter.stringify(value) + "\n", sink.toString(), context);
+	}
+
+	// and all of them one after the other, into the same buffer
+	OutputSink.InMemory sink = new OutputSink.InMemory();
+	StringBuilder expected = new StringBuilder();
+	for (Object value : values) {
+		sink.print(value);
+		expected.append(interpreter.stringify(value)).append('\n');
+	}
+	assertEquals(expected.toString(), sink.toString());
+  }
+
+  @Test
+  void flushesEveryLine() {
+    Recording sink = new Recording(OutputSink.Flush.LINE, 1 << 16);
+	sink.print(1.0);
+	assertEquals(List.of(2), sink.drains);
+	sink.print("abc");
+	assertEquals(List.of(2, 4), sink.drains);
+	sink.flush();
+	assertEquals(List.of(2, 4), sink.drains, "nothing left to flush");
+  }
+
+  @Test
+  void flushesOnceTheThresholdIsReached() {
+    Recording sink = new Recording(OutputSink.Flush.BYTES, 10);
+	sink.print("abcd"); // 5 bytes
+	sink.print("efg"); // 9
+	assertEquals(List.of(), sink.drains);
+	sink.print("h"); // 11
+	assertEquals(List.of(11), sink.drains);
+	sink.print("ijklmnopq"); // 10 on its own
+	assertEquals(List.of(11, 10), sink.drains);
+	sink.print(null);
+	assertEquals(List.of(11, 10), sink.drains);
+	sink.flush();
+	assertEquals(List.of(11, 10, 4), sink.drains);
+	assertEquals("abcd\nefg\nh\nijklmnopq\nnil\n", sink.toString());
+  }
+
+  @Test
+  void flushesAtTheEndOrWhenTheBufferIsFull() {
+    Recording sink = new Recording(OutputSink.Flush.END, 1 << 16);
+	for (int i = 0; i < 1000; i++) sink.print((double)i);
+	assertEquals(List.of(), sink.drains);
+	sink.flush();
+	assertEquals(List.of(3890), sink.drains);
+
+	sink = new Recording(OutputSink.Flush.END, 1 << 16);
+	String line = "z".repeat(1023); // 1 KiB with the newline
+	for (int i = 0; i < 64; i++) sink.print(line);
+	assertEquals(List.of(), sink.drains, "exactly the 64 KiB buffer");
+	sink.print("more");
+	assertEquals(List.of(1 << 16), sink.drains);
+	sink.flush();
+	assertEquals(List.of(1 << 16, 5), sink.drains);
+  }
+}
@@ -0,0 +1,97 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ParallelEvaluatorTest {
+  private static final TokenType[] OPERATORS = {TokenType.PLUS, TokenType.MINUS, TokenType.STAR};
+
+  private final ForkJoinPool pool = new ForkJoinPool(4);
+  private final Environment environment = new Environment();
+  private int offset = 0; // every token its own, so an error tells where it came from
+
+  @AfterEach
+  void shutDown() {
+    pool.shutdown();
+  }
+
+  private Token token(TokenType type, String lexeme) {
+    return new Token(type, lexeme, null, 1, offset++);
+  }
+
+  /*
+   * a balanced tree of `leaves` small numbers, with about `errors` leaves
+   * that fail in one of a few ways spread over it.
+   */
+  private Expr tree(Random random, int leaves, double errors) {
+    if (leaves == 1) {
+		if (random.nextDouble() < errors / 1000) {
+			switch (random.nextInt(3)) {
+				case 0: return new Expr.Unary(token(TokenType.MINUS, "-"), new Expr.Literal("s"));
+				case 1: return new Expr.Variable(token(TokenType.IDENTIFIER, "undefined"));
+				default: return new Expr.Binary(new Expr.Literal(1.0), token(TokenType.PLUS, "+"), new Expr.Literal(null));
+			}
+		}
+		if (random.nextInt(50) == 0) return new Expr.Variable(token(TokenType.IDENTIFIER, "v"));
+		return new Expr.Literal((double)random.nextInt(5));
+	}
+	int left = 1 + random.nextInt(leaves - 1);
+	Expr leftTree = tree(random, left, errors);
+	TokenType type = OPERATORS[random.nextInt(OPERATORS.length)];
+	Token operator = token(type, type == TokenType.PLUS ? "+" : type == TokenType.MINUS ? "-" : "*");
+	return new Expr.Binary(leftTree, operator, tree(random, leaves - left, errors));
+  }
+
+  // the value, or the first error as its message and token
+  private static Object outcome(Supplier<Object> evaluation) {
+    try {
+		return evaluation.get();
+	} catch (RuntimeError error) {
+		return error;
+	}
+  }
+
+  @Test
+  void agreesWithTheInterpreterOnValuesAndErrors() {
+    environment.define("v", 0.5);
+	Interpreter sequential = new Interpreter(new OutputSink.InMemory());
+	sequential.environment.define("v", 0.5);
+	ParallelEvaluator parallel = new ParallelEvaluator(pool, environment);
+
+	Random random = new Random(37);
+	int failed = 0;
+	for (int round = 0; round < 40; round++) {
+		double errors = round % 4 == 0 ? 0 : round % 4; // per thousand leaves
+		Expr expr = tree(random, ParallelEvaluator.THRESHOLD * (2 + random.nextInt(8)), errors);
+		Object expected = outcome(() -> sequential.evaluate(expr));
+		for (int run = 0; run < 3; run++) { // the error that wins must not depend on timing
+			Object actual = outcome(() -> parallel.evaluate(expr));
+			if (expected instanceof RuntimeError) {
+				RuntimeError error = (RuntimeError)expected;
+				assertTrue(actual instanceof RuntimeError, "round " + round + " gave " + actual);
+				assertSame(error.token, ((RuntimeError)actual).token, "round " + round);
+				assertEquals(error.getMessage(), ((RuntimeError)actual).getMessage(), "round " + round);
+			} else {
+				assertEquals(expected, actual, "round " + round);
+			}
+		}
+		if (expected instanceof RuntimeError) failed++;
+	}
+	assertTrue(failed > 5 && failed < 35, "both outcomes were tried, " + failed + " failed");
+  }
+
+  @Test
+  void evaluatesSmallTreesWithoutThePool() {
+    ParallelEvaluator parallel = new ParallelEvaluator(pool, environment);
+	Expr small = new Parser(new Scanner("(1 + 2) * 3 - 4").scanTokens()).parse();
+	assertEquals(5.0, parallel.evaluate(small));
+	assertEquals(0, pool.getStealCount());
+  }
+}
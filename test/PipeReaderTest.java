@@ -0,0 +1,137 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class PipeReaderTest {
+  private static final int READ_SIZE = 1 << 20;
+
+  // at most `chunk` bytes per read, like a pipe with a slow producer
+  private static InputStream trickle(byte[] bytes, int chunk) {
+    return new FilterInputStream(new ByteArrayInputStream(bytes)) {
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			return super.read(buffer, offset, Math.min(length, chunk));
+		}
+	};
+  }
+
+  // the batches the reader hands over for `in`
+  private static List<List<String>> batches(InputStream in) throws Exception {
+    PipeReader pipe = new PipeReader(in, StandardCharsets.UTF_8);
+	Thread reader = new Thread(pipe, "jlox-pipe-reader");
+	reader.start();
+	List<List<String>> batches = new ArrayList<>();
+	List<String> batch;
+	while ((batch = pipe.next()) != null) batches.add(batch);
+	assertNull(pipe.next(), "stays at the end");
+	reader.join();
+	return batches;
+  }
+
+  private static List<String> lines(InputStream in) throws Exception {
+    List<String> lines = new ArrayList<>();
+	for (List<String> batch : batches(in)) lines.addAll(batch);
+	return lines;
+  }
+
+  private static List<String> lines(String input) throws Exception {
+    return lines(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  void splitsLinesLikeReadLine() throws Exception {
+    assertEquals(List.of("1 + 2", "3", ""), lines("1 + 2\r\n3\n\r\n"));
+	assertEquals(List.of("1", "2"), lines("1\n2"), "the last line without a newline");
+	assertEquals(List.of("a\rb"), lines("a\rb\n"), "only a \\r before the \\n goes");
+	assertEquals(List.of(), lines(""));
+	assertEquals(List.of(""), lines("\n"));
+  }
+
+  @Test
+  void keepsACharSplitAcrossBlocks() throws Exception {
+    String head = "a".repeat(READ_SIZE - 1); // the block ends in the middle of the é
+	assertEquals(List.of(head + "éb", "日本"), lines(head + "éb\r\n日本\n"));
+
+	String cut = "c".repeat(READ_SIZE - 1);
+	assertEquals(List.of(cut, "d"), lines(cut + "\r\nd\n"), "a \\r\\n cut in two");
+
+	byte[] split = "é日😀\nü\n".getBytes(StandardCharsets.UTF_8);
+	assertEquals(List.of("é日😀", "ü"), lines(trickle(split, 1)), "every char split, a byte at a time");
+  }
+
+  @Test
+  void batchesUpTo1024Lines() throws Exception {
+    for (int count : new int[] {1023, 1024, 1025, 2048, 2049}) {
+		List<List<String>> batches = batches(new ByteArrayInputStream("1\n".repeat(count).getBytes(StandardCharsets.UTF_8)));
+		List<Integer> sizes = new ArrayList<>();
+		for (List<String> batch : batches) sizes.add(batch.size());
+		List<Integer> expected = new ArrayList<>();
+		for (int left = count; left > 0; left -= 1024) expected.add(Math.min(left, 1024));
+		assertEquals(expected, sizes, count + " lines");
+	}
+  }
+
+  // stdout and stderr together, and the exit status, of jlox reading `input`,
+  // all in the platform charset as jlox reads and writes that
+  private static String[] launch(boolean terminal, String input) throws Exception {
+    Charset charset = Charset.defaultCharset();
+	InputStream in = System.in;
+	PrintStream out = System.out;
+	PrintStream err = System.err;
+	ByteArrayOutputStream both = new ByteArrayOutputStream();
+	PrintStream captured = new PrintStream(both, true, charset);
+	int status;
+	try {
+		System.setIn(new ByteArrayInputStream(input.getBytes(charset)));
+		System.setOut(captured);
+		System.setErr(captured);
+		Lox.hadError = false;
+		Lox.hadRuntimeError = false;
+		status = Lox.launch(new String[0], terminal);
+	} finally {
+		System.setIn(in);
+		System.setOut(out);
+		System.setErr(err);
+		Lox.hadError = false;
+		Lox.hadRuntimeError = false;
+	}
+	return new String[] {both.toString(charset), "" + status};
+  }
+
+  @Test
+  void printsWhatTheReplPrints() throws Exception {
+    StringBuilder many = new StringBuilder();
+	for (int i = 0; i < 3000; i++) many.append(i % 100 == 7 ? "(1 +" : i + " * 2").append('\n');
+	String[] inputs = {
+		"",
+		"1 + 2\n\"a\" + \"b\"\n",
+		"1\r\n2\r\n3",
+		"1\n(1 +\n2\n@\n3\n",
+		"1\n-\"x\"\n2\n3\n",
+		"1\n-\"x\"",
+		"\"é\" + \"日本\"\n!nil\n",
+		many.toString(),
+		many + "-nil\n4\n",
+	};
+	for (String input : inputs) {
+		String[] repl = launch(true, input);
+		String[] pipe = launch(false, input);
+		String context = input.length() > 20 ? input.substring(0, 20) + "..." : input;
+		assertEquals(repl[0].replace("> ", ""), pipe[0], context);
+		assertEquals(repl[1], pipe[1], context);
+	}
+  }
+}
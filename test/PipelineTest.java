@@ -0,0 +1,154 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PipelineTest {
+  private final PrintStream stderr = System.err;
+  private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+  @BeforeEach
+  void capture() {
+    System.setErr(new PrintStream(err, true, Charset.defaultCharset()));
+	Lox.hadError = false;
+	Lox.hadRuntimeError = false;
+  }
+
+  @AfterEach
+  void release() {
+    System.setErr(stderr);
+	Lox.hadError = false;
+	Lox.hadRuntimeError = false;
+  }
+
+  // what the program prints through the pipeline: {out, err, exit code}
+  private String[] run(String source, boolean stream) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+	err.reset();
+	Lox.hadError = false;
+	Lox.hadRuntimeError = false;
+	new Pipeline(new PrintStream(out, false, Charset.defaultCharset()), stream).run(source);
+	return new String[] {out.toString(Charset.defaultCharset()), err.toString(Charset.defaultCharset()), exit()};
+  }
+
+  // the same, one phase after the other as --sequential runs it
+  private String[] sequential(String source) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+	err.reset();
+	Lox.hadError = false;
+	Lox.hadRuntimeError = false;
+	Interpreter interpreter = new Interpreter(OutputSink.to(out, OutputSink.Flush.END, 1 << 16));
+	List<Stmt> statements = new Parser(new Scanner(source).scanTokens()).parseProgram();
+	if (!Lox.hadError) interpreter.interpret(statements);
+	interpreter.output.flush();
+	return new String[] {out.toString(Charset.defaultCharset()), err.toString(Charset.defaultCharset()), exit()};
+  }
+
+  private static String exit() {
+    return Lox.hadError ? "65" : Lox.hadRuntimeError ? "70" : "0";
+  }
+
+  // `count` statements printing their own number
+  private static String prints(int from, int count) {
+    StringBuilder source = new StringBuilder();
+	for (int i = from; i < from + count; i++) source.append("print ").append(i).append(";\n");
+	return source.toString();
+  }
+
+  private static String lines(int from, int count) {
+    StringBuilder out = new StringBuilder();
+	for (int i = from; i < from + count; i++) out.append(i).append('\n');
+	return out.toString();
+  }
+
+  @Test
+  void printsWhatRunningThePhasesInOrderPrints() throws Exception {
+    String[] sources = {
+		prints(0, 2000),
+		"print 1;\nprint 2\nprint 3;\n",
+		prints(0, 1000) + "print (1;\n" + prints(1001, 1000) + "print ;\n",
+		"print 1;\nprint 2 @ + 3;\nprint 4;\n",
+		prints(0, 1000) + "@",
+		prints(0, 500) + "print -\"x\";\n" + prints(501, 500),
+		prints(0, 10) + "print -\"x\";\n" + prints(11, 10) + "print (;\n",
+		"",
+	};
+	for (String source : sources) {
+		String[] expected = sequential(source);
+		for (int round = 0; round < 3; round++) { // and not by chance
+			String[] actual = run(source, false);
+			String context = source.length() > 40 ? source.substring(0, 40) + "..." : source;
+			assertEquals(expected[0], actual[0], context);
+			assertEquals(expected[1], actual[1], context);
+			assertEquals(expected[2], actual[2], context);
+		}
+	}
+  }
+
+  @Test
+  void runsNothingWhenASyntaxErrorFollows() throws Exception {
+    String[] result = run("print 1;\nprint 2\nprint 3;\n", false);
+	assertEquals("", result[0]);
+	assertEquals("[line 3] Error at 'print': Expect ';' after value.\n", result[1]);
+	assertEquals("65", result[2]);
+  }
+
+  @Test
+  void printsARuntimeErrorAfterTheOutputBeforeIt() throws Exception {
+    String source = prints(0, 500) + "print -\"x\";\n" + prints(501, 500);
+	for (boolean stream : new boolean[] {false, true}) {
+		String[] result = run(source, stream);
+		assertEquals(lines(0, 500), result[0]);
+		assertEquals("Operand must be a number.\n[line 501]\n", result[1]);
+		assertEquals("70", result[2]);
+	}
+  }
+
+  @Test
+  void streamingRunsTheStatementsBeforeASyntaxError() throws Exception {
+    String[] result = run("print 1;\nprint 2\nprint 3;\n", true);
+	assertEquals("1\n", result[0], "unlike one phase after the other");
+	assertEquals("65", result[2]);
+
+	String source = prints(0, 1000) + "print (1;\n" + prints(1001, 1000) + "print ;\n";
+	for (int round = 0; round < 5; round++) {
+		result = run(source, true);
+		assertEquals(lines(0, 1000), result[0], "round " + round);
+		assertEquals("[line 1001] Error at ';': Expect ')' after expression.\n" +
+			"[line 2002] Error at ';': Expect expression.\n", result[1]);
+	}
+  }
+
+  @Test
+  void streamingStopsAtTheStatementOfAScanError() throws Exception {
+    String[] result = run("print 1;\nprint 2 @ + 3;\nprint 4;\n", true);
+	assertEquals("1\n", result[0], "not the statement with the error in it");
+	assertEquals("[line 2] Error: Unexpected character.\n", result[1]);
+
+	result = run("print 1; @\nprint 2;\n", true);
+	assertEquals("1\n", result[0], "the error is after the first statement");
+
+	result = run("print 1;\nprint 2;\n@", true);
+	assertEquals("1\n2\n", result[0], "after every statement");
+	assertEquals("65", result[2]);
+  }
+
+  @Test
+  void streamingPrintsARuntimeErrorBeforeALaterSyntaxError() throws Exception {
+    String source = prints(0, 10) + "print -\"x\";\n" + prints(11, 10) + "print (;\n";
+	String[] result = run(source, true);
+	assertEquals(lines(0, 10), result[0]);
+	assertEquals("Operand must be a number.\n[line 11]\n[line 22] Error at ';': Expect expression.\n", result[1]);
+	assertTrue(Lox.hadError && Lox.hadRuntimeError);
+	assertFalse(result[2].equals("70"), "a syntax error is what the exit code says");
+  }
+}
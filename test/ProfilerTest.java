@@ -0,0 +1,46 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class ProfilerTest {
+  // what writeStacks writes for one profiled evaluation of `source`
+  private static String stacks(String source) throws Exception {
+    AtomicReference<String> written = new AtomicReference<>();
+	AtomicReference<Throwable> failure = new AtomicReference<>();
+	// a long chain evaluates one level of recursion per operator
+	Thread thread = new Thread(null, () -> {
+		try {
+			Profiler profiler = new Profiler(source, "chain", new OutputSink.InMemory());
+			profiler.profile(new Parser(new Scanner(source).scanTokens()).parse());
+			StringWriter out = new StringWriter();
+			profiler.writeStacks(out, false);
+			written.set(out.toString());
+		} catch (Throwable error) {
+			failure.set(error);
+		}
+	}, "profiled", 1L << 30);
+	thread.start();
+	thread.join();
+	if (failure.get() != null) throw new AssertionError(failure.get());
+	return written.get();
+  }
+
+  @Test
+  void foldsFramesBelowMaxDepthIntoTheirAncestor() throws Exception {
+    String stacks = stacks("1" + " + 1".repeat(5_000));
+	int deepest = 0;
+	for (String line : stacks.split("\n")) {
+		String path = line.substring(0, line.lastIndexOf(' '));
+		int frames = path.split(";").length;
+		assertTrue(frames <= Profiler.MAX_DEPTH + 1, "root and at most MAX_DEPTH below it: " + frames);
+		assertTrue(path.equals("chain") || path.startsWith("chain;+ 1:"), path);
+		deepest = Math.max(deepest, frames);
+	}
+	assertEquals(Profiler.MAX_DEPTH + 1, deepest, "the 5000 operators below it are there, in the one at MAX_DEPTH");
+  }
+}
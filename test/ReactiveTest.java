@@ -0,0 +1,101 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class ReactiveTest {
+  private final Reactive reactive = new Reactive();
+
+  private static Expr parse(String source) {
+    return new Parser(new Scanner(source).scanTokens()).parse();
+  }
+
+  @Test
+  void reevaluatesOnlyWhatAChangedInputReaches() {
+    reactive.setInput("a", 1.0);
+	reactive.setInput("b", 2.0);
+	reactive.define("sum", parse("a + b * 10"));
+	reactive.define("other", parse("b - 1"));
+	reactive.define("twice", parse("sum * 2"));
+	reactive.update();
+	assertEquals(21.0, reactive.value("sum"));
+	assertEquals(42.0, reactive.value("twice"));
+	assertEquals(3, reactive.reevaluatedFormulas);
+
+	reactive.setInput("a", 5.0);
+	reactive.update();
+	assertEquals(25.0, reactive.value("sum"));
+	assertEquals(50.0, reactive.value("twice"));
+	assertEquals(1.0, reactive.value("other"));
+	assertEquals(2, reactive.reevaluatedFormulas, "not other");
+	assertEquals(4, reactive.reevaluatedNodes, "a and the + above it, sum and the * above it");
+
+	reactive.setInput("a", 5.0);
+	reactive.update();
+	assertEquals(0, reactive.reevaluatedFormulas, "same value, nothing to do");
+  }
+
+  @Test
+  void stopsWhereAValueDidNotChange() {
+    reactive.setInput("x", 3.0);
+	reactive.define("positive", parse("x > 0"));
+	reactive.define("label", parse("positive == true"));
+	reactive.update();
+
+	reactive.setInput("x", 4.0);
+	reactive.update();
+	assertEquals(1, reactive.reevaluatedFormulas, "positive is still true, label stays");
+  }
+
+  @Test
+  void keepsErrorsAndRecoversFromThem() {
+    reactive.setInput("x", "text");
+	reactive.define("negative", parse("-x"));
+	reactive.define("reader", parse("negative + 1"));
+	reactive.update();
+	assertNotNull(reactive.error("negative"));
+	assertEquals("Operand must be a number.", reactive.error("reader").getMessage());
+	assertNull(reactive.value("reader"));
+
+	reactive.setInput("x", "other text");
+	reactive.update();
+	assertEquals(1, reactive.reevaluatedFormulas, "the same error at the same place, readers stay");
+
+	reactive.setInput("x", 2.0);
+	reactive.update();
+	assertNull(reactive.error("negative"));
+	assertEquals(-1.0, reactive.value("reader"));
+	assertEquals(2, reactive.reevaluatedFormulas);
+  }
+
+  @Test
+  void rejectsBadDefinitionsWithoutATrace() {
+    reactive.setInput("a", 1.0);
+	assertThrows(IllegalArgumentException.class, () -> reactive.define("a", parse("1")));
+	assertThrows(IllegalArgumentException.class, () -> reactive.define("loop", parse("a + (1 + loop)")));
+	assertThrows(IllegalArgumentException.class, () -> reactive.value("loop"));
+
+	reactive.define("loop", parse("a + 1"));
+	reactive.define("late", parse("early * 2"));
+	assertThrows(IllegalArgumentException.class, () -> reactive.define("early", parse("1")),
+		"would be read before it is defined");
+	reactive.update();
+	assertEquals(2.0, reactive.value("loop"));
+	assertEquals("Undefined variable 'early'.", reactive.error("late").getMessage());
+  }
+
+  @Test
+  void formulasSeeInputsSetLater() {
+    reactive.define("f", parse("later + 1"));
+	reactive.update();
+	assertNotNull(reactive.error("f"));
+
+	reactive.setInput("later", 1.0);
+	reactive.update();
+	assertEquals(2.0, reactive.value("f"));
+  }
+}
@@ -0,0 +1,113 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class RopeTest {
+  private static final String[] PIECES = {"", "a", "bc", "déf", "日本", "😀", "x".repeat(63), "y".repeat(65), "z".repeat(200)};
+
+  private final Interpreter interpreter = new Interpreter();
+
+  private static Token operator(TokenType type, String lexeme) {
+    return new Token(type, lexeme, null, 1, 0);
+  }
+
+  private static Expr plus(Expr left, Expr right) {
+    return new Expr.Binary(left, operator(TokenType.PLUS, "+"), right);
+  }
+
+  /*
+   * a random tree of `+` over `leaves` pieces. `text` gets what plain
+   * String concatenation of them gives.
+   */
+  private static Expr tree(Random random, int leaves, StringBuilder text) {
+    if (leaves == 1) {
+		String piece = PIECES[random.nextInt(PIECES.length)];
+		text.append(piece);
+		return new Expr.Literal(piece);
+	}
+	int left = 1 + random.nextInt(leaves - 1);
+	Expr leftTree = tree(random, left, text);
+	return plus(leftTree, tree(random, leaves - left, text));
+  }
+
+  // a `+` chain of `pieces`, left to right, evaluated with stack to spare
+  private Object chain(String... pieces) throws Exception {
+    Expr expr = new Expr.Literal(pieces[0]);
+	for (int i = 1; i < pieces.length; i++) expr = plus(expr, new Expr.Literal(pieces[i]));
+	Expr chain = expr;
+	AtomicReference<Object> value = new AtomicReference<>();
+	AtomicReference<Throwable> failure = new AtomicReference<>();
+	// evaluating it recurses once per operator, flattening it must not
+	Thread thread = new Thread(null, () -> {
+		try {
+			value.set(interpreter.evaluate(chain));
+		} catch (Throwable error) {
+			failure.set(error);
+		}
+	}, "evaluating", 1L << 30);
+	thread.start();
+	thread.join();
+	if (failure.get() != null) throw new AssertionError(failure.get());
+	return value.get();
+  }
+
+  private Object equal(Object left, Object right, TokenType type) {
+    return interpreter.evaluate(new Expr.Binary(new Expr.Literal(left),
+		operator(type, type == TokenType.EQUAL_EQUAL ? "==" : "!="), new Expr.Literal(right)));
+  }
+
+  @Test
+  void stringifiesLikePlainConcatenation() {
+    Random random = new Random(31);
+	for (int round = 0; round < 200; round++) {
+		StringBuilder text = new StringBuilder();
+		Expr expr = tree(random, 1 + random.nextInt(300), text);
+		Object value = interpreter.evaluate(expr);
+		assertEquals(text.toString(), interpreter.stringify(value), "round " + round);
+		assertEquals(text.length(), ((CharSequence)value).length());
+		assertEquals(text.toString(), interpreter.stringify(value), "and again, once flattened");
+	}
+  }
+
+  @Test
+  void comparesByText() throws Exception {
+    String text = "x".repeat(40) + "y".repeat(40) + "z".repeat(40);
+	Object rope = chain("x".repeat(40), "y".repeat(40), "z".repeat(40));
+	assertTrue(rope instanceof Rope, "long enough to stay one");
+	Object other = interpreter.evaluate(plus(new Expr.Literal("x".repeat(40)),
+		plus(new Expr.Literal("y".repeat(40)), new Expr.Literal("z".repeat(40)))));
+	assertTrue(other instanceof Rope);
+
+	assertEquals(true, equal(rope, text, TokenType.EQUAL_EQUAL));
+	assertEquals(true, equal(text, rope, TokenType.EQUAL_EQUAL));
+	assertEquals(false, equal(rope, text, TokenType.BANG_EQUAL));
+	assertEquals(true, equal(rope, other, TokenType.EQUAL_EQUAL), "built the other way round");
+	assertEquals(false, equal(rope, other, TokenType.BANG_EQUAL));
+
+	Object longer = chain("x".repeat(40), "y".repeat(40), "z".repeat(41));
+	assertEquals(false, equal(rope, longer, TokenType.EQUAL_EQUAL));
+	assertEquals(true, equal(longer, text, TokenType.BANG_EQUAL));
+	assertEquals(false, equal(rope, 120.0, TokenType.EQUAL_EQUAL));
+	assertEquals(false, equal(rope, null, TokenType.EQUAL_EQUAL));
+  }
+
+  @Test
+  void flattensALongChainWithoutRecursing() throws Exception {
+    String[] pieces = new String[200_000];
+	StringBuilder text = new StringBuilder();
+	for (int i = 0; i < pieces.length; i++) {
+		pieces[i] = i % 2 == 0 ? "ab" : "ç";
+		text.append(pieces[i]);
+	}
+	Object rope = chain(pieces);
+	assertTrue(rope instanceof Rope);
+	// on this thread's ordinary stack, 200000 levels deep
+	assertEquals(text.toString(), interpreter.stringify(rope));
+	assertEquals(true, equal(rope, text.toString(), TokenType.EQUAL_EQUAL));
+  }
+}
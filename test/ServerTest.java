@@ -0,0 +1,118 @@
+package com.craftinginterpreters.lox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ServerTest {
+  private ServerSocket listening;
+
+  @AfterEach
+  void stop() throws IOException {
+    if (listening != null) listening.close(); // ends serve()
+  }
+
+  // a server on a port of its own, returns that port
+  private int start(long timeoutNanos) throws IOException {
+    listening = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+	Server server = new Server(0, 4, 0, timeoutNanos, 0, Server.DEFAULT_MAX_DEPTH);
+	ServerSocket socket = listening;
+	Thread thread = new Thread(() -> {
+		try {
+			server.serve(socket);
+		} catch (IOException error) {
+			// closed by the test
+		}
+	}, "jlox-server");
+	thread.setDaemon(true);
+	thread.start();
+	return socket.getLocalPort();
+  }
+
+  private static class Client implements AutoCloseable {
+    final Socket socket;
+	final Writer out;
+	final BufferedReader in;
+
+	Client(int port) throws IOException {
+		socket = new Socket(InetAddress.getLoopbackAddress(), port);
+		out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+		in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+	}
+
+	String ask(String request) throws IOException {
+		out.write(request + "\n");
+		out.flush();
+		return in.readLine();
+	}
+
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+  }
+
+  @Test
+  void answersPipelinedRequestsInOrder() throws Exception {
+    try (Client client = new Client(start(0))) {
+		StringBuilder requests = new StringBuilder();
+		for (int i = 0; i < 2000; i++) requests.append(i % 500 == 9 ? "-\"x\"" : i + " + 1").append('\n');
+		client.out.write(requests.toString()); // all of them before reading any answer
+		client.out.flush();
+		for (int i = 0; i < 2000; i++) {
+			String expected = i % 500 == 9 ? "error Operand must be a number. [line 1]" : "ok " + (i + 1);
+			assertEquals(expected, client.in.readLine(), "request " + i);
+		}
+	}
+  }
+
+  @Test
+  void keepsServingAfterADeepNestingRequest() throws Exception {
+    int port = start(0);
+	try (Client client = new Client(port)) {
+		String deep = "(".repeat(100_000) + "1" + ")".repeat(100_000);
+		assertTrue(client.ask(deep).startsWith("error "));
+		assertTrue(client.ask("-".repeat(100_000) + "1").startsWith("error "));
+		assertEquals("ok 3", client.ask("1 + 2"), "on the same connection");
+	}
+	try (Client client = new Client(port)) {
+		assertEquals("ok ab", client.ask("\"a\" + \"b\""), "and on a new one");
+	}
+  }
+
+  // `leaves` ones added up as a balanced tree, shallow enough for the depth limit
+  private static String sum(int leaves) {
+    if (leaves == 1) return "1";
+	return "(" + sum(leaves / 2) + ")+(" + sum(leaves - leaves / 2) + ")";
+  }
+
+  @Test
+  void timesOutARunawayRequest() throws Exception {
+    try (Client client = new Client(start(TimeUnit.MILLISECONDS.toNanos(20)))) {
+		assertEquals("error Evaluation timed out. [line 1]", client.ask(sum(1 << 18)));
+		assertEquals("ok 3", client.ask("1 + 2"), "the next one has its own time");
+	}
+  }
+
+  @Test
+  void reportsItsStats() throws Exception {
+    try (Client client = new Client(start(0))) {
+		client.ask("1");
+		client.ask("(");
+		String stats = client.ask(":stats");
+		assertTrue(stats.matches("stats requests=2 errors=1 throughput=\\d+/s p50=[\\d.]+us p99=[\\d.]+us"), stats);
+	}
+  }
+}
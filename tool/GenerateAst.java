@@ -32,7 +32,8 @@ public class GenerateAst {
 		"Binary   : Expr left, Token operator, Expr right",
 		"Grouping : Expr expression",
 		"Literal  : Object value",
-		"Unary    : Token operator, Expr right"
+		"Unary    : Token operator, Expr right",
+		"Variable : Token name"
     ));
 
 	defineAst(outputDir, "Stmt", Arrays.asList(
@@ -63,12 +64,21 @@ public class GenerateAst {
 	 */
     defineVisitor(writer, baseName, types); // defineVisitor that generates visitor interface.
 
+	/*
+	 * trees of the base class (an Expr inside an Expr) know how many nodes
+	 * they have and how deep they go, counted once as they are built, so
+	 * nobody has to walk a subtree to find out (see ParallelEvaluator, and
+	 * Parser for the depth).
+	 */
+	boolean sized = isRecursive(baseName, types);
+	if (sized) defineSize(writer, baseName);
+
 
 	// AST Classes. These are each defined in the base class
 	for (String type : types){
 		String className = type.split(":")[0].trim(); //left hand side
 		String fields = type.split(":")[1].trim(); //right hand side
-		defineType(writer, baseName, className, fields); // defineType is written just below
+		defineType(writer, baseName, className, fields, sized); // defineType is written just below
 	}
 
 	// we define the abstract accept() method in the base class
@@ -90,17 +100,55 @@ public class GenerateAst {
 
 	writer.println("  }");
   }
+  private static boolean isRecursive(String baseName, List<String> types) {
+    for (String type : types) {
+		for (String field : type.split(":")[1].trim().split(", ")) {
+			if (field.split(" ")[0].equals(baseName)) return true;
+		}
+	}
+	return false;
+  }
+
+  private static void defineSize(PrintWriter writer, String baseName) {
+    writer.println();
+	writer.println("  // nodes in this subtree, itself included");
+	writer.println("  final int size;");
+	writer.println("  // nodes on its longest path down, itself included");
+	writer.println("  final int depth;");
+	writer.println();
+	writer.println("  " + baseName + "(int size, int depth) {");
+	writer.println("    this.size = size;");
+	writer.println("    this.depth = depth;");
+	writer.println("  }");
+	writer.println();
+  }
+
   /*
    * defineType HERE!!
    */
-  private static void defineType( PrintWriter writer, String baseName, String className, String fieldList ){
+  private static void defineType( PrintWriter writer, String baseName, String className, String fieldList,
+		boolean sized ){
     writer.println("  static class " + className + " extends " + baseName + " {");
 
 	// Constructor for the class
 	writer.println("    " + className + "(" + fieldList + ") {");
 
-	// Store parameters in fields.
 	String[] fields = fieldList.split(", ");
+
+	// this node plus the nodes of its children, and plus the deepest child
+	if (sized) {
+		StringBuilder size = new StringBuilder("1");
+		String depth = null;
+		for (String field : fields) {
+			if (!field.split(" ")[0].equals(baseName)) continue;
+			String name = field.split(" ")[1];
+			size.append(" + ").append(name).append(".size");
+			depth = depth == null ? name + ".depth" : "Math.max(" + depth + ", " + name + ".depth)";
+		}
+		writer.println("    super(" + size + ", " + (depth == null ? "1" : "1 + " + depth) + ");");
+	}
+
+	// Store parameters in fields.
 	for (String field: fields) {
 		String name = field.split(" ")[1];
 		writer.println("    this." + name + " = " + name + ";");
@@ -0,0 +1,107 @@
+package com.craftinginterpreters.tool;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Load generator for jlox server mode (jlox --serve).
+ *
+ * Opens `connections` clients, each sending `requests` expressions in
+ * pipelined rounds of `depth` lines: write the whole round, then read all of
+ * its answers. Prints throughput and round trip percentiles, then asks the
+ * server for its own counters.
+ *
+ *   load_generator <port> [connections] [requests] [depth] [expression]
+ */
+public class LoadGenerator {
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+		System.err.println("Usage: load_generator <port> [connections] [requests] [depth] [expression]");
+		System.exit(64);
+	}
+	int port = Integer.parseInt(args[0]);
+	int connections = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+	int requests = args.length > 2 ? Integer.parseInt(args[2]) : 100000;
+	int depth = args.length > 3 ? Integer.parseInt(args[3]) : 32;
+	String expression = args.length > 4 ? args[4] : "(1 + 2) * 3 - 4 / 5";
+
+	int rounds = (requests + depth - 1) / depth;
+	long[][] latencies = new long[connections][rounds];
+	AtomicLong failed = new AtomicLong();
+
+	Thread[] clients = new Thread[connections];
+	long start = System.nanoTime();
+	for (int c = 0; c < connections; c++) {
+		long[] roundTrips = latencies[c];
+		clients[c] = new Thread(() -> {
+			try {
+				runClient(port, rounds, depth, expression, roundTrips, failed);
+			} catch (IOException error) {
+				throw new RuntimeException(error);
+			}
+		});
+		clients[c].start();
+	}
+	for (Thread client : clients) client.join();
+	double seconds = (System.nanoTime() - start) / 1e9;
+
+	long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+	long total = (long)rounds * depth * connections;
+	System.out.printf("requests=%d errors=%d seconds=%.2f throughput=%.0f/s%n",
+		total, failed.get(), seconds, total / seconds);
+	System.out.printf("round trip of %d pipelined requests: p50=%.1fus p99=%.1fus%n",
+		depth, percentile(all, 0.50) / 1000.0, percentile(all, 0.99) / 1000.0);
+
+	try (Socket socket = new Socket("localhost", port);
+		BufferedReader in = reader(socket);
+		BufferedWriter out = writer(socket)) {
+		out.write(":stats\n");
+		out.flush();
+		System.out.println("server " + in.readLine());
+	}
+  }
+
+  private static void runClient(int port, int rounds, int depth, String expression,
+		long[] roundTrips, AtomicLong failed) throws IOException {
+    try (Socket socket = new Socket("localhost", port);
+		BufferedReader in = reader(socket);
+		BufferedWriter out = writer(socket)) {
+		socket.setTcpNoDelay(true);
+		for (int round = 0; round < rounds; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < depth; i++) {
+				out.write(expression);
+				out.write('\n');
+			}
+			out.flush();
+			for (int i = 0; i < depth; i++) {
+				String response = in.readLine();
+				if (response == null) throw new IOException("server closed the connection");
+				if (!response.startsWith("ok ")) failed.incrementAndGet();
+			}
+			roundTrips[round] = System.nanoTime() - start;
+		}
+	}
+  }
+
+  private static long percentile(long[] sorted, double quantile) {
+    if (sorted.length == 0) return 0;
+	int index = (int)Math.ceil(quantile * sorted.length) - 1;
+	return sorted[Math.max(0, index)];
+  }
+
+  private static BufferedReader reader(Socket socket) throws IOException {
+    return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+  }
+
+  private static BufferedWriter writer(Socket socket) throws IOException {
+    return new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+  }
+}
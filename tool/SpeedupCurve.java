@@ -0,0 +1,94 @@
+package com.craftinginterpreters.tool;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Speedup of `jlox --parallel` over the number of threads.
+ *
+ * Writes one balanced expression of `leaves` numbers to a temporary file
+ * and runs jlox on it with 1, 2, 4, ... threads up to the number of cores,
+ * or up to `threads` (more than the cores shows what oversubscribing costs).
+ * Every thread count is run twice, evaluating once and `1 + repeat` times,
+ * and the difference is the time of `repeat` evaluations alone: startup,
+ * scanning and parsing cancel out.
+ *
+ *   speedup_curve <classpath> [leaves] [repeat] [threads]
+ */
+public class SpeedupCurve {
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length < 1 || args.length > 4) {
+		System.err.println("Usage: speedup_curve <classpath> [leaves] [repeat] [threads]");
+		System.exit(64);
+	}
+	String classpath = args[0];
+	int leaves = args.length > 1 ? Integer.parseInt(args[1]) : 1 << 20;
+	int repeat = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+	int maxThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+	Path script = Files.createTempFile("speedup", ".lox");
+	try {
+		StringBuilder source = new StringBuilder();
+		balanced(source, 0, leaves);
+		Files.write(script, source.toString().getBytes(StandardCharsets.UTF_8));
+
+		double base = 0;
+		System.out.println("threads  ms/eval  speedup");
+		for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+			double once = time(classpath, script, threads, 1);
+			double many = time(classpath, script, threads, 1 + repeat);
+			double perEval = (many - once) / repeat;
+			if (threads == 1) base = perEval;
+			System.out.printf("%7d  %7.1f  %6.2fx%n", threads, perEval, base / perEval);
+			if (threads == maxThreads) break;
+		}
+	} finally {
+		Files.delete(script);
+	}
+  }
+
+  /*
+   * `(left) op (right)` all the way down, so both operands of every
+   * operator are about the same size. + and - alternate by depth so the
+   * numbers stay small.
+   */
+  private static void balanced(StringBuilder out, int depth, int leaves) {
+    if (leaves == 1) {
+		out.append(depth % 10);
+		return;
+	}
+	out.append('(');
+	balanced(out, depth + 1, leaves / 2);
+	out.append(depth % 2 == 0 ? ") + (" : ") - (");
+	balanced(out, depth + 1, leaves - leaves / 2);
+	out.append(')');
+  }
+
+  private static double time(String classpath, Path script, int threads, int repeat)
+		throws IOException, InterruptedException {
+    List<String> command = new ArrayList<>();
+	command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+	command.add("-cp");
+	command.add(classpath);
+	command.add("com.craftinginterpreters.lox.Lox");
+	command.add("--parallel");
+	command.add("--threads");
+	command.add(String.valueOf(threads));
+	command.add("--repeat");
+	command.add(String.valueOf(repeat));
+	command.add(script.toString());
+
+	long start = System.nanoTime();
+	Process process = new ProcessBuilder(command)
+		.redirectOutput(ProcessBuilder.Redirect.DISCARD)
+		.redirectError(ProcessBuilder.Redirect.INHERIT)
+		.start();
+	if (process.waitFor() != 0) throw new IOException("jlox failed: " + String.join(" ", command));
+	return (System.nanoTime() - start) / 1e6;
+  }
+}
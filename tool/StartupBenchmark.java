@@ -0,0 +1,57 @@
+package com.craftinginterpreters.tool;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Cold versus warm start of jlox.
+ *
+ * Runs the same jlox arguments `runs` times as a fresh JVM (cold) and then
+ * through DaemonClient against an already running `jlox --daemon` (warm),
+ * and prints the mean wall time per invocation of each.
+ *
+ *   startup_benchmark <classpath> <runs> <jlox args...>
+ */
+public class StartupBenchmark {
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length < 3) {
+		System.err.println("Usage: startup_benchmark <classpath> <runs> <jlox args...>");
+		System.exit(64);
+	}
+	String classpath = args[0];
+	int runs = Integer.parseInt(args[1]);
+	List<String> loxArgs = Arrays.asList(args).subList(2, args.length);
+
+	double cold = time(command(classpath, "com.craftinginterpreters.lox.Lox", loxArgs), runs);
+	double warm = time(command(classpath, "com.craftinginterpreters.lox.DaemonClient", loxArgs), runs);
+	System.out.printf("cold %.1f ms/run%n", cold);
+	System.out.printf("warm %.1f ms/run (daemon)%n", warm);
+	System.out.printf("speedup %.2fx%n", cold / warm);
+  }
+
+  private static List<String> command(String classpath, String mainClass, List<String> loxArgs) {
+    List<String> command = new ArrayList<>();
+	command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+	command.add("-cp");
+	command.add(classpath);
+	command.add(mainClass);
+	command.addAll(loxArgs);
+	return command;
+  }
+
+  private static double time(List<String> command, int runs) throws IOException, InterruptedException {
+    long start = System.nanoTime();
+	for (int i = 0; i < runs; i++) {
+		Process process = new ProcessBuilder(command)
+			.redirectInput(ProcessBuilder.Redirect.from(new File("/dev/null")))
+			.redirectOutput(ProcessBuilder.Redirect.DISCARD)
+			.redirectError(ProcessBuilder.Redirect.DISCARD)
+			.start();
+		process.waitFor();
+	}
+	return (System.nanoTime() - start) / 1e6 / runs;
+  }
+}